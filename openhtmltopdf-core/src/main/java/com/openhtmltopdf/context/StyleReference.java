@@ -19,7 +19,6 @@
  */
 package com.openhtmltopdf.context;
 
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -41,10 +40,15 @@ import com.openhtmltopdf.css.sheet.PropertyDeclaration;
 import com.openhtmltopdf.css.sheet.Stylesheet;
 import com.openhtmltopdf.css.sheet.StylesheetInfo;
 import com.openhtmltopdf.css.style.CalculatedStyle;
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
 import com.openhtmltopdf.extend.NamespaceHandler;
+import com.openhtmltopdf.extend.RenderMetrics.Stage;
 import com.openhtmltopdf.extend.UserAgentCallback;
 import com.openhtmltopdf.extend.UserInterface;
 import com.openhtmltopdf.layout.SharedContext;
+import com.openhtmltopdf.util.RenderMetricsCollector;
+import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 
 
@@ -194,7 +198,14 @@ public class StyleReference {
      */
     public CascadedStyle getCascadedStyle(Element e, boolean restyle) {
         if (e == null) return CascadedStyle.emptyCascadedStyle;
-        return _matcher.getCascadedStyle(e, restyle);
+
+        RenderMetricsCollector metrics = ThreadCtx.metrics();
+        long start = metrics.startStage(Stage.CASCADE);
+        try {
+            return _matcher.getCascadedStyle(e, restyle);
+        } finally {
+            metrics.endStage(Stage.CASCADE, start);
+        }
     }
 
     /**
@@ -238,8 +249,7 @@ public class StyleReference {
                     ref.setUri(uri);
                 } else {
                     ref.setUri(_uac.getBaseURL() + "#inline_style_" + (++inlineStyleCount));
-                    Stylesheet sheet = _stylesheetFactory.parse(
-                            new StringReader(ref.getContent()), ref);
+                    Stylesheet sheet = _stylesheetFactory.parse(ref.getContent(), ref);
                     ref.setStylesheet(sheet);
                     ref.setUri(null);
                 }
@@ -267,4 +277,11 @@ public class StyleReference {
     public void setSupportCMYKColors(boolean b) {
         _stylesheetFactory.setSupportCMYKColors(b);
     }
+
+    /**
+     * See {@link StylesheetFactoryImpl#setStylesheetCache(FSCacheEx)}
+     */
+    public void setStylesheetCache(FSCacheEx<String, FSCacheValue> cache) {
+        _stylesheetFactory.setStylesheetCache(cache);
+    }
 }
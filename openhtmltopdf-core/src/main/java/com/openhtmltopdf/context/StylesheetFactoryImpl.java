@@ -21,7 +21,9 @@ package com.openhtmltopdf.context;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 
@@ -30,15 +32,23 @@ import com.openhtmltopdf.css.parser.CSSParser;
 import com.openhtmltopdf.css.sheet.Ruleset;
 import com.openhtmltopdf.css.sheet.Stylesheet;
 import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.extend.RenderMetrics.Counter;
+import com.openhtmltopdf.extend.RenderMetrics.Stage;
 import com.openhtmltopdf.extend.UserAgentCallback;
+import com.openhtmltopdf.extend.impl.FSNoOpCacheStore;
 import com.openhtmltopdf.resource.CSSResource;
 import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.OpenUtil;
+import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 
 /**
  * A Factory class for Cascading Style Sheets. Sheets are parsed using a single
- * parser instance for all sheets. Sheets are cached by URI using a LRU test,
- * but timestamp of file is not checked.
+ * parser instance for all sheets. If a style sheet cache is set with
+ * {@link #setStylesheetCache(FSCacheEx)}, parsed sheets are shared between renders,
+ * keyed by uri and a hash of the sheet text, so a changed sheet is parsed again.
  *
  * @author Torbjoern Gannholm
  */
@@ -62,6 +72,30 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
 
     private final CSSParser _cssParser;
 
+    private boolean _supportCMYKColors;
+
+    private FSCacheEx<String, FSCacheValue> _stylesheetCache;
+
+    /**
+     * The most style attribute values to keep parsed for the rest of the render.
+     */
+    private static final int MAX_CACHED_DECLARATIONS = 4096;
+
+    /**
+     * Style attributes are often repeated many times, for example on every
+     * cell of a generated table, so are only parsed once per render.
+     * Least recently used values are dropped first.
+     */
+    private final Map<String, Ruleset> _declarationCache =
+        new LinkedHashMap<String, Ruleset>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Ruleset> eldest) {
+                return size() > MAX_CACHED_DECLARATIONS;
+            }
+        };
+
     public StylesheetFactoryImpl(UserAgentCallback userAgentCallback) {
         _userAgentCallback = userAgentCallback;
         _cssParser = new CSSParser((uri, message) -> {
@@ -70,12 +104,60 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
     }
 
     public Stylesheet parse(Reader reader, StylesheetInfo info) {
+        long start = ThreadCtx.metrics().startStage(Stage.CSS_PARSE);
+
         try {
             return _cssParser.parseStylesheet(info.getUri(), info.getOrigin(), reader);
         } catch (IOException e) {
             XRLog.log(Level.WARNING, LogMessageId.LogMessageId2Param.CSS_PARSE_COULDNT_PARSE_STYLESHEET_AT_URI, info.getUri(), e.getMessage(), e);
             return new Stylesheet(info.getUri(), info.getOrigin());
+        } finally {
+            ThreadCtx.metrics().endStage(Stage.CSS_PARSE, start);
+        }
+    }
+
+    /**
+     * Parses style sheet text, or returns the sheet parsed from the same
+     * uri and text by an earlier render if a style sheet cache is set.
+     */
+    public Stylesheet parse(String css, StylesheetInfo info) {
+        if (_stylesheetCache == null) {
+            return parse(new StringReader(css), info);
+        }
+
+        String key = createCacheKey(css, info);
+        FSCacheValue cached = _stylesheetCache.get(key);
+
+        if (cached instanceof CachedStylesheet) {
+            ThreadCtx.metrics().count(Counter.CACHE_HITS, 1);
+            return ((CachedStylesheet) cached).stylesheet;
         }
+
+        ThreadCtx.metrics().count(Counter.CACHE_MISSES, 1);
+
+        Stylesheet sheet = parse(new StringReader(css), info);
+        _stylesheetCache.put(key, new CachedStylesheet(sheet, css.length()));
+
+        return sheet;
+    }
+
+    private String createCacheKey(String css, StylesheetInfo info) {
+        // The uri is part of the key as relative urls in the sheet
+        // are resolved against it while parsing.
+        return "css:" + info.getOrigin() + ":" + (_supportCMYKColors ? "cmyk:" : "rgb:") +
+               info.getUri() + ":" + css.length() + ":" + OpenUtil.sha256Hex(css);
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[8192];
+        int read;
+
+        while ((read = reader.read(buf)) != -1) {
+            sb.append(buf, 0, read);
+        }
+
+        return sb.toString();
     }
 
     /**
@@ -92,7 +174,12 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
                     return null;
                 }
 
-                return parse(reader, info);
+                if (_stylesheetCache == null) {
+                    return parse(reader, info);
+                }
+
+                // The sheet must be read to know if it has changed.
+                return parse(readAll(reader), info);
             }
 
         } catch (IOException e1) {
@@ -101,8 +188,54 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
         }
     }
 
+    /**
+     * Parses a style attribute value, or returns the value parsed earlier in this render
+     * or, if a style sheet cache is set, in an earlier render with the same base uri.
+     */
     public Ruleset parseStyleDeclaration(int origin, String styleDeclaration) {
-        return _cssParser.parseDeclaration(origin, styleDeclaration);
+        String key = origin + ":" + styleDeclaration;
+        Ruleset ruleset = _declarationCache.get(key);
+
+        if (ruleset != null) {
+            ThreadCtx.metrics().count(Counter.CACHE_HITS, 1);
+            return ruleset;
+        }
+
+        String sharedKey = null;
+        if (_stylesheetCache != null) {
+            // Relative urls are resolved against the base uri while parsing.
+            sharedKey = "css-declaration:" + (_supportCMYKColors ? "cmyk:" : "rgb:") +
+                        ThreadCtx.get().sharedContext().getBaseURL() + ":" + key;
+
+            FSCacheValue cached = _stylesheetCache.get(sharedKey);
+            if (cached instanceof CachedDeclaration) {
+                ruleset = ((CachedDeclaration) cached).ruleset;
+            }
+        }
+
+        if (ruleset != null) {
+            ThreadCtx.metrics().count(Counter.CACHE_HITS, 1);
+        } else {
+            ThreadCtx.metrics().count(Counter.CACHE_MISSES, 1);
+            ruleset = parseStyleDeclarationUncached(origin, styleDeclaration);
+
+            if (sharedKey != null) {
+                _stylesheetCache.put(sharedKey, new CachedDeclaration(ruleset, sharedKey.length()));
+            }
+        }
+
+        _declarationCache.put(key, ruleset);
+        return ruleset;
+    }
+
+    private Ruleset parseStyleDeclarationUncached(int origin, String styleDeclaration) {
+        long start = ThreadCtx.metrics().startStage(Stage.CSS_PARSE);
+
+        try {
+            return _cssParser.parseDeclaration(origin, styleDeclaration);
+        } finally {
+            ThreadCtx.metrics().endStage(Stage.CSS_PARSE, start);
+        }
     }
 
     /**
@@ -134,6 +267,53 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
     }
     
     public void setSupportCMYKColors(boolean b) {
+        _supportCMYKColors = b;
         _cssParser.setSupportCMYKColors(b);
+        _declarationCache.clear();
+    }
+
+    /**
+     * Sets a cache to share parsed style sheets with other renders, or null
+     * to parse every sheet. Relative urls in a sheet are resolved when it is parsed,
+     * so renders sharing a cache should use the same uri resolver.
+     */
+    public void setStylesheetCache(FSCacheEx<String, FSCacheValue> cache) {
+        // No point reading and hashing sheets to look them up in a cache that is always empty.
+        _stylesheetCache = cache == FSNoOpCacheStore.INSTANCE ? null : cache;
+    }
+
+    /**
+     * Parsed style sheets are not changed after parsing so can be
+     * used by many renders at once.
+     */
+    private static class CachedStylesheet implements FSCacheValue {
+        private final Stylesheet stylesheet;
+        private final int weight;
+
+        CachedStylesheet(Stylesheet stylesheet, int length) {
+            this.stylesheet = stylesheet;
+            // Very roughly, the parsed objects take several times the space of the text.
+            this.weight = length * 8;
+        }
+
+        @Override
+        public int weight() {
+            return weight;
+        }
+    }
+
+    private static class CachedDeclaration implements FSCacheValue {
+        private final Ruleset ruleset;
+        private final int weight;
+
+        CachedDeclaration(Ruleset ruleset, int length) {
+            this.ruleset = ruleset;
+            this.weight = length * 8;
+        }
+
+        @Override
+        public int weight() {
+            return weight;
+        }
     }
 }
@@ -386,6 +386,23 @@ public final class CSSName implements Comparable<CSSName> {
                     new PrimitivePropertyBuilders.FSTablePaginate()
             );
 
+    /**
+     * The number of body rows an auto layout table measures to decide its column widths,
+     * or zero to measure every row. Header and footer rows are always measured.
+     * Content in later rows that is wider than its column overflows the cell.
+     * <br><br>
+     * This only shortens the min/max width pass over the table's cells. Every row is
+     * still laid out and kept in memory, so it does not lower memory use.
+     */
+    public final static CSSName FS_TABLE_LAYOUT_SAMPLE_ROWS =
+            addProperty(
+                    "-fs-table-layout-sample-rows",
+                    PRIMITIVE,
+                    "0",
+                    NOT_INHERITED,
+                    new PrimitivePropertyBuilders.FSTableLayoutSampleRows()
+            );
+
     /**
      * Unique CSSName instance for CSS2 property.
      */
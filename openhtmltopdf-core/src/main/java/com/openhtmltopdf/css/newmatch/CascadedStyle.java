@@ -62,6 +62,9 @@ public class CascadedStyle {
     private final Map<CSSName, PropertyDeclaration> cascadedProperties;
 
     private String fingerprint;
+
+    private long fingerprintHash;
+    private boolean fingerprintHashed;
     
     /**
      * Constructs a new CascadedStyle, given an {@link java.util.Iterator} of
@@ -235,6 +238,51 @@ public class CascadedStyle {
 
     public int countAssigned() { return cascadedProperties.size(); }
 
+    /**
+     * A 64-bit hash of the cascaded declarations, built from the cached hash of each
+     * declaration so no string is built. Styles with the same declarations have the
+     * same hash. Use {@link #hasSameDeclarations(CascadedStyle)} to rule out a collision.
+     */
+    public long getFingerprintHash() {
+        if (!this.fingerprintHashed) {
+            long h = 0xcbf29ce484222325L;
+            for (PropertyDeclaration o : cascadedProperties.values()) {
+                h ^= o.getFingerprintHash();
+                h *= 0x100000001b3L;
+                h ^= h >>> 29;
+            }
+            this.fingerprintHash = h;
+            this.fingerprintHashed = true;
+        }
+        return this.fingerprintHash;
+    }
+
+    /**
+     * Whether this style has the same cascaded declarations as another, that is
+     * whether the two would have the same {@link #getFingerprint()}.
+     */
+    public boolean hasSameDeclarations(CascadedStyle other) {
+        if (other == this) {
+            return true;
+        }
+
+        if (other.cascadedProperties.size() != this.cascadedProperties.size()) {
+            return false;
+        }
+
+        Iterator<PropertyDeclaration> theirs = other.cascadedProperties.values().iterator();
+
+        for (PropertyDeclaration ours : this.cascadedProperties.values()) {
+            PropertyDeclaration their = theirs.next();
+
+            if (ours != their && !ours.getFingerprint().equals(their.getFingerprint())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     public String getFingerprint() {
         if (this.fingerprint == null) {
             StringBuilder sb = new StringBuilder();
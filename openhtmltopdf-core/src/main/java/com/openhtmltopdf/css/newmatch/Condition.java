@@ -39,6 +39,20 @@ abstract class Condition {
     abstract boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes);
     abstract void toCSS(StringBuilder sb);
 
+    /**
+     * The id an element must have to match this condition, or null.
+     */
+    String getRequiredId() {
+        return null;
+    }
+
+    /**
+     * A class an element must have to match this condition, or null.
+     */
+    String getRequiredClass() {
+        return null;
+    }
+
     /**
      * the CSS condition [attribute]
      *
@@ -398,6 +412,11 @@ abstract class Condition {
             sb.append('.');
             sb.append(_paddedClassName.substring(1, _paddedClassName.length() - 1));
         }
+
+        @Override
+        String getRequiredClass() {
+            return _paddedClassName.substring(1, _paddedClassName.length() - 1);
+        }
     }
 
     private static class IDCondition extends Condition {
@@ -424,6 +443,11 @@ abstract class Condition {
             sb.append('#');
             sb.append(_id);
         }
+
+        @Override
+        String getRequiredId() {
+            return _id;
+        }
     }
 
     private static class LangCondition extends Condition {
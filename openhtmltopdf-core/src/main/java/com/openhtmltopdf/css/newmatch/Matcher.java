@@ -22,6 +22,7 @@ package com.openhtmltopdf.css.newmatch;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -31,7 +32,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.logging.Level;
 import com.openhtmltopdf.css.constants.MarginBoxName;
 import com.openhtmltopdf.css.extend.AttributeResolver;
@@ -169,35 +169,31 @@ public class Matcher {
     }
 
     Mapper createDocumentMapper(List<Stylesheet> stylesheets, String medium) {
-        java.util.TreeMap<String,Selector> sorter = new java.util.TreeMap<>();
-        addAllStylesheets(stylesheets, sorter, medium);
-        XRLog.log(Level.INFO, LogMessageId.LogMessageId1Param.MATCH_MATCHER_CREATED_WITH_SELECTOR, sorter.size());
-        return new Mapper(sorter.values());
+        List<Selector> selectors = new ArrayList<>();
+        addAllStylesheets(stylesheets, selectors, medium);
+
+        // Style sheets may be shared between renders so rather than numbering
+        // selectors by position we rely on a stable sort to keep source order
+        // for selectors of the same specificity.
+        selectors.sort(Comparator.comparingLong(Selector::getSpecificity));
+
+        XRLog.log(Level.INFO, LogMessageId.LogMessageId1Param.MATCH_MATCHER_CREATED_WITH_SELECTOR, selectors.size());
+        return new Mapper(selectors);
     }
     
-    private void addAllStylesheets(List<Stylesheet> stylesheets, TreeMap<String, Selector> sorter, String medium) {
-        int count = 0;
-        int pCount = 0;
+    private void addAllStylesheets(List<Stylesheet> stylesheets, List<Selector> selectors, String medium) {
         for (Stylesheet stylesheet : stylesheets) {
             for (Object obj : stylesheet.getContents()) {
                 if (obj instanceof Ruleset) {
-                    for (Selector selector : ((Ruleset) obj).getFSSelectors()) {
-                        selector.setPos(++count);
-                        sorter.put(selector.getOrder(), selector);
-                    }
+                    selectors.addAll(((Ruleset) obj).getFSSelectors());
                 } else if (obj instanceof PageRule) {
-                    ((PageRule) obj).setPos(++pCount);
                     _pageRules.add((PageRule) obj);
                 } else if (obj instanceof MediaRule) {
                     MediaRule mediaRule = (MediaRule) obj;
                     if (mediaRule.matches(medium)) {
                         for (Object o : mediaRule.getContents()) {
                             Ruleset ruleset = (Ruleset) o;
-                            for (Object o1 : ruleset.getFSSelectors()) {
-                                Selector selector = (Selector) o1;
-                                selector.setPos(++count);
-                                sorter.put(selector.getOrder(), selector);
-                            }
+                            selectors.addAll(ruleset.getFSSelectors());
                         }
                     }
                 }
@@ -205,19 +201,95 @@ public class Matcher {
 
             _fontFaceRules.addAll(stylesheet.getFontFaceRules());
         }
-        
-        Collections.sort(_pageRules, new Comparator<PageRule>() {
-            @Override
-            public int compare(PageRule p1, PageRule p2) {
-                if (p1.getOrder() - p2.getOrder() < 0) {
-                    return -1;
-                } else if (p1.getOrder() == p2.getOrder()) {
-                    return 0;
-                } else {
-                    return 1;
+
+        // Stable, so page rules of the same specificity stay in source order.
+        _pageRules.sort(Comparator.comparingLong(PageRule::getSpecificity));
+    }
+
+    /**
+     * The most cascaded styles for elements with style attributes to keep per mapper.
+     */
+    private static final int MAX_STYLED_CASCADED_STYLES = 256;
+
+    /**
+     * Key for the child mappers of a mapper, the indexes of the selectors
+     * that matched, or for cascaded styles, the parsed style attributes.
+     * Compared by identity of the attributes as they are shared within a render.
+     */
+    private static final class MatchKey {
+        private final int[] matched;
+        private final int matchedCount;
+        private final Ruleset nonCssStyling;
+        private final Ruleset elementStyling;
+        private final int hash;
+
+        MatchKey(int[] matched, int matchedCount) {
+            this.matched = matched;
+            this.matchedCount = matchedCount;
+            this.nonCssStyling = null;
+            this.elementStyling = null;
+
+            int h = 1;
+            for (int i = 0; i < matchedCount; i++) {
+                h = 31 * h + matched[i];
+            }
+            this.hash = h;
+        }
+
+        MatchKey(Ruleset nonCssStyling, Ruleset elementStyling) {
+            this.matched = null;
+            this.matchedCount = 0;
+            this.nonCssStyling = nonCssStyling;
+            this.elementStyling = elementStyling;
+            this.hash = 31 * System.identityHashCode(nonCssStyling) + System.identityHashCode(elementStyling);
+        }
+
+        /**
+         * The matched array may be longer than needed so
+         * is trimmed before the key is stored.
+         */
+        MatchKey copy() {
+            return new MatchKey(matched == null ? null : Arrays.copyOf(matched, matchedCount), matchedCount);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MatchKey)) {
+                return false;
+            }
+
+            MatchKey other = (MatchKey) obj;
+
+            if (other.hash != hash ||
+                other.matchedCount != matchedCount ||
+                other.nonCssStyling != nonCssStyling ||
+                other.elementStyling != elementStyling) {
+                return false;
+            }
+
+            for (int i = 0; i < matchedCount; i++) {
+                if (other.matched[i] != matched[i]) {
+                    return false;
                 }
             }
-        });
+
+            return true;
+        }
+    }
+
+    private static SelectorIndex createIndex(List<Selector> axes) {
+        for (Selector sel : axes) {
+            if (sel.getAxis() == Selector.IMMEDIATE_SIBLING_AXIS) {
+                throw new RuntimeException();
+            }
+        }
+
+        return new SelectorIndex(axes);
     }
 
     private void link(Object e, Mapper m) {
@@ -276,7 +348,24 @@ public class Matcher {
         private final Map<String, List<Selector>> pseudoSelectors;
         private final List<Selector> mappedSelectors;
 
-        private Map<String, Mapper> children;
+        private Map<MatchKey, Mapper> children;
+
+        /**
+         * Cascaded style of elements without style attributes, which only
+         * depends on the selectors this mapper matched.
+         */
+        private CascadedStyle cascadedStyle;
+
+        /**
+         * Cascaded styles of elements with style attributes, keyed by
+         * the parsed attributes, which are shared within a render.
+         */
+        private Map<MatchKey, CascadedStyle> styledCascadedStyles;
+
+        /**
+         * Built on first use, as many mappers are never asked to map a child.
+         */
+        private SelectorIndex index;
 
         Mapper(Collection<Selector> selectors) {
             this.axes = new ArrayList<>(selectors);
@@ -301,13 +390,78 @@ public class Matcher {
          *         (more correct: preserves the sort order from Matcher creation)
          */
         Mapper mapChild(Object e) {
+            if (index == null) {
+                index = createIndex(axes);
+            }
+
+            // Indexes into axes of matched selectors, ascending.
+            int[] matched = null;
+            int matchedCount = 0;
+
+            for (int i : index.candidates(e, _attRes, _treeRes)) {
+                Selector sel = axes.get(i);
+
+                if (!sel.matches(e, _attRes, _treeRes)) {
+                    continue;
+                }
+
+                // Assumption: if it is a pseudo-element, it does not also have dynamic pseudo-class
+                if (sel.getPseudoElement() == null) {
+                    if (sel.isPseudoClass(Selector.VISITED_PSEUDOCLASS)) {
+                        _visitElements.add(e);
+                    }
+                    if (sel.isPseudoClass(Selector.ACTIVE_PSEUDOCLASS)) {
+                        _activeElements.add(e);
+                    }
+                    if (sel.isPseudoClass(Selector.HOVER_PSEUDOCLASS)) {
+                        _hoverElements.add(e);
+                    }
+                    if (sel.isPseudoClass(Selector.FOCUS_PSEUDOCLASS)) {
+                        _focusElements.add(e);
+                    }
+
+                    if (!sel.matchesDynamic(e, _attRes, _treeRes)) {
+                        continue;
+                    }
+                }
+
+                if (matched == null) {
+                    matched = new int[8];
+                } else if (matchedCount == matched.length) {
+                    matched = Arrays.copyOf(matched, matchedCount * 2);
+                }
+                matched[matchedCount++] = i;
+            }
+
+            if (children == null) {
+                children = new HashMap<>();
+            }
+
+            // The child mapper only depends on which selectors matched so
+            // is only created the first time a set of matches is seen.
+            MatchKey childKey = new MatchKey(matched, matchedCount);
+            Mapper childMapper = children.get(childKey);
+
+            if (childMapper == null) {
+                childMapper = createChild(matched, matchedCount);
+                children.put(childKey.copy(), childMapper);
+            }
+
+            link(e, childMapper);
+
+            return childMapper;
+        }
+
+        private Mapper createChild(int[] matched, int matchedCount) {
             List<Selector> childAxes = null;
             List<Selector> mappedSelectors = null;
             Map<String, List<Selector>> pseudoSelectors = null;
 
-            StringBuilder key = new StringBuilder();
+            int next = 0;
+
+            for (int i = 0; i < axes.size(); i++) {
+                Selector sel = axes.get(i);
 
-            for (Selector sel : axes) {
                 if (sel.getAxis() == Selector.DESCENDANT_AXIS) {
                     if (childAxes == null) {
                         childAxes = new ArrayList<>();
@@ -315,15 +469,13 @@ public class Matcher {
 
                     // Carry it forward to other descendants
                     childAxes.add(sel);
-                } else if (sel.getAxis() == Selector.IMMEDIATE_SIBLING_AXIS) {
-                    throw new RuntimeException();
                 }
 
-                if (!sel.matches(e, _attRes, _treeRes)) {
+                if (next == matchedCount || matched[next] != i) {
                     continue;
                 }
+                next++;
 
-                // Assumption: if it is a pseudo-element, it does not also have dynamic pseudo-class
                 String pseudoElement = sel.getPseudoElement();
 
                 if (pseudoElement != null) {
@@ -333,30 +485,9 @@ public class Matcher {
 
                     List<Selector> l = pseudoSelectors.computeIfAbsent(pseudoElement, kee -> new ArrayList<>());
                     l.add(sel);
-
-                    key.append(sel.getSelectorID()).append(":");
                     continue;
                 }
 
-                if (sel.isPseudoClass(Selector.VISITED_PSEUDOCLASS)) {
-                    _visitElements.add(e);
-                }
-                if (sel.isPseudoClass(Selector.ACTIVE_PSEUDOCLASS)) {
-                    _activeElements.add(e);
-                }
-                if (sel.isPseudoClass(Selector.HOVER_PSEUDOCLASS)) {
-                    _hoverElements.add(e);
-                }
-                if (sel.isPseudoClass(Selector.FOCUS_PSEUDOCLASS)) {
-                    _focusElements.add(e);
-                }
-
-                if (!sel.matchesDynamic(e, _attRes, _treeRes)) {
-                    continue;
-                }
-
-                key.append(sel.getSelectorID()).append(":");
-
                 Selector chain = sel.getChainedSelector();
 
                 if (chain == null) {
@@ -376,30 +507,44 @@ public class Matcher {
                 }
             }
 
-            if (children == null) {
-                children = new HashMap<>();
+            return new Mapper(
+                    childAxes == null ? Collections.emptyList() : childAxes,
+                    mappedSelectors == null ? Collections.emptyList() : mappedSelectors,
+                    pseudoSelectors == null ? Collections.emptyMap() : pseudoSelectors);
+        }
+
+        CascadedStyle getCascadedStyle(Object e) {
+            Ruleset elementStyling = getElementStyle(e);
+            Ruleset nonCssStyling = getNonCssStyle(e);
+
+            // Sharing the cascaded style also means its fingerprint is only
+            // worked out once, rather than once per element.
+            if (elementStyling == null && nonCssStyling == null) {
+                if (cascadedStyle == null) {
+                    cascadedStyle = createCascadedStyle(null, null);
+                }
+                return cascadedStyle;
             }
 
-            List<Selector> normalisedChildAxes = childAxes == null ? Collections.emptyList() : childAxes;
-            List<Selector> normalisedMappedSelectors = mappedSelectors == null ? Collections.emptyList() : mappedSelectors;
-            Map<String, List<Selector>> normalisedPseudoSelectors = pseudoSelectors == null ? Collections.emptyMap() : pseudoSelectors;
+            if (styledCascadedStyles == null) {
+                styledCascadedStyles = new HashMap<>();
+            }
 
-            Mapper childMapper = children.computeIfAbsent(
-                    key.toString(),
-                    kee -> new Mapper(
-                        normalisedChildAxes,
-                        normalisedMappedSelectors,
-                        normalisedPseudoSelectors));
+            MatchKey key = new MatchKey(nonCssStyling, elementStyling);
+            CascadedStyle style = styledCascadedStyles.get(key);
 
-            link(e, childMapper);
+            if (style == null) {
+                style = createCascadedStyle(elementStyling, nonCssStyling);
 
-            return childMapper;
-        }
+                if (styledCascadedStyles.size() < MAX_STYLED_CASCADED_STYLES) {
+                    styledCascadedStyles.put(key, style);
+                }
+            }
 
-        CascadedStyle getCascadedStyle(Object e) {
-            Ruleset elementStyling = getElementStyle(e);
-            Ruleset nonCssStyling = getNonCssStyle(e);
+            return style;
+        }
 
+        private CascadedStyle createCascadedStyle(Ruleset elementStyling, Ruleset nonCssStyling) {
             List<PropertyDeclaration> propList = new ArrayList<>();
 
             // Specificity 0,0,0,0
@@ -27,6 +27,7 @@ import com.openhtmltopdf.util.XRLog;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 
@@ -52,8 +53,6 @@ public class Selector {
     private int _specificityC;
     private int _specificityD;
 
-    private int _pos;//to distinguish between selectors of same specificity
-
     private List<Condition> conditions;
 
     public final static int DESCENDANT_AXIS = 0;
@@ -70,10 +69,11 @@ public class Selector {
      */
     private int selectorID;
     private Selector _ancestorSelector;
-    private static int selectorCount = 0;
+    private static final AtomicInteger selectorCount = new AtomicInteger();
 
     public Selector() {
-        selectorID = selectorCount++;
+        // Style sheets may be parsed on many threads at once.
+        selectorID = selectorCount.getAndIncrement();
     }
 
     /**
@@ -382,20 +382,16 @@ public class Selector {
     }
 
     /**
-     * returns "a number in a large base" with specificity and specification
-     * order of selector
-     *
-     * @return The order value
+     * The specificity of the selector chain as a number for sorting. Selectors
+     * of the same specificity must be kept in source order by a stable sort.
      */
-    String getOrder() {
+    long getSpecificity() {
         if (chainedSelector != null) {
-            return chainedSelector.getOrder();
+            return chainedSelector.getSpecificity();
         }//only "deepest" value is correct
-        String b = "000" + getSpecificityB();
-        String c = "000" + getSpecificityC();
-        String d = "000" + getSpecificityD();
-        String p = "00000" + _pos;
-        return "0" + b.substring(b.length() - 3) + c.substring(c.length() - 3) + d.substring(d.length() - 3) + p.substring(p.length() - 5);
+        return ((long) getSpecificityB() << 40) |
+               ((long) getSpecificityC() << 20) |
+               getSpecificityD();
     }
 
     /**
@@ -518,22 +514,57 @@ public class Selector {
     public int getSelectorID() {
         return selectorID;
     }
+
+    /**
+     * The element name this selector requires, or null if it matches any element.
+     */
+    String getName() {
+        return _name;
+    }
+
+    /**
+     * The id this selector requires, or null.
+     */
+    String getRequiredId() {
+        if (conditions != null) {
+            for (Condition c : conditions) {
+                String id = c.getRequiredId();
+                if (id != null) {
+                    return id;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The first class this selector requires, or null.
+     */
+    String getRequiredClass() {
+        if (conditions != null) {
+            for (Condition c : conditions) {
+                String className = c.getRequiredClass();
+                if (className != null) {
+                    return className;
+                }
+            }
+        }
+        return null;
+    }
     
     public void setName(String name) {
         _name = name;
         _specificityD++;
     }
     
+    /**
+     * @deprecated Selectors of the same specificity are kept in source order
+     * by a stable sort, so the position is no longer used. Does nothing.
+     */
+    @Deprecated
     public void setPos(int pos) {
-        _pos = pos;
-        if (siblingSelector != null) {
-            siblingSelector.setPos(pos);
-        }
-        if (chainedSelector != null) {
-            chainedSelector.setPos(pos);
-        }
     }
-    
+
     public void setParent(Ruleset ruleset) {
         _parent = ruleset;
     }
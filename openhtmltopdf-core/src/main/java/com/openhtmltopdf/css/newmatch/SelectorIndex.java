@@ -0,0 +1,175 @@
+package com.openhtmltopdf.css.newmatch;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.openhtmltopdf.css.extend.AttributeResolver;
+import com.openhtmltopdf.css.extend.TreeResolver;
+
+/**
+ * Buckets a list of selectors by the id, class or element name they require,
+ * so that an element is only tested against selectors that could match it
+ * rather than against every selector.
+ * <br><br>
+ * Each selector goes in one bucket, the most selective it has: id, then its first class,
+ * then element name. Selectors with none of these, such as <code>*</code>
+ * or <code>[type=text]</code>, are tested against every element.
+ */
+class SelectorIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<String, int[]> _byId;
+    private final Map<String, int[]> _byClass;
+    private final Map<String, int[]> _byName;
+    private final int[] _universal;
+
+    SelectorIndex(List<Selector> selectors) {
+        Map<String, IntList> byId = new HashMap<>();
+        Map<String, IntList> byClass = new HashMap<>();
+        Map<String, IntList> byName = new HashMap<>();
+        IntList universal = new IntList();
+
+        for (int i = 0; i < selectors.size(); i++) {
+            Selector sel = selectors.get(i);
+
+            String id = sel.getRequiredId();
+            if (id != null) {
+                byId.computeIfAbsent(id, k -> new IntList()).add(i);
+                continue;
+            }
+
+            String className = sel.getRequiredClass();
+            if (className != null) {
+                byClass.computeIfAbsent(className, k -> new IntList()).add(i);
+                continue;
+            }
+
+            String name = sel.getName();
+            if (name != null) {
+                byName.computeIfAbsent(name, k -> new IntList()).add(i);
+                continue;
+            }
+
+            universal.add(i);
+        }
+
+        _byId = toArrays(byId);
+        _byClass = toArrays(byClass);
+        _byName = toArrays(byName);
+        _universal = universal.toArray();
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, IntList> lists) {
+        Map<String, int[]> arrays = new HashMap<>(lists.size() * 2);
+        lists.forEach((key, list) -> arrays.put(key, list.toArray()));
+        return arrays;
+    }
+
+    /**
+     * @return the indexes, in ascending order, of the selectors that could match
+     * the element. The caller must still test each one.
+     */
+    int[] candidates(Object e, AttributeResolver attRes, TreeResolver treeRes) {
+        int[][] buckets = null;
+        int bucketCount = 0;
+
+        String name = treeRes.getElementName(e);
+        int[] named = name != null ? _byName.get(name) : null;
+        if (named != null) {
+            buckets = addBucket(buckets, bucketCount++, named);
+        }
+
+        if (attRes != null) {
+            String id = _byId.isEmpty() ? null : attRes.getID(e);
+            int[] ided = id != null ? _byId.get(id) : null;
+            if (ided != null) {
+                buckets = addBucket(buckets, bucketCount++, ided);
+            }
+
+            String classes = _byClass.isEmpty() ? null : attRes.getClass(e);
+            if (classes != null) {
+                int len = classes.length();
+                int start = 0;
+
+                while (start < len) {
+                    while (start < len && Character.isWhitespace(classes.charAt(start))) {
+                        start++;
+                    }
+
+                    int end = start;
+                    while (end < len && !Character.isWhitespace(classes.charAt(end))) {
+                        end++;
+                    }
+
+                    if (end > start) {
+                        int[] classed = _byClass.get(classes.substring(start, end));
+                        if (classed != null) {
+                            buckets = addBucket(buckets, bucketCount++, classed);
+                        }
+                    }
+
+                    start = end;
+                }
+            }
+        }
+
+        if (bucketCount == 0) {
+            return _universal;
+        } else if (bucketCount == 1 && _universal.length == 0) {
+            return buckets[0];
+        }
+
+        int total = _universal.length;
+        for (int i = 0; i < bucketCount; i++) {
+            total += buckets[i].length;
+        }
+
+        int[] merged = Arrays.copyOf(_universal, total);
+        int pos = _universal.length;
+        for (int i = 0; i < bucketCount; i++) {
+            System.arraycopy(buckets[i], 0, merged, pos, buckets[i].length);
+            pos += buckets[i].length;
+        }
+
+        Arrays.sort(merged);
+
+        // The same class may be given twice on an element.
+        int unique = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (i == 0 || merged[i] != merged[i - 1]) {
+                merged[unique++] = merged[i];
+            }
+        }
+
+        return unique == merged.length ? merged : Arrays.copyOf(merged, unique);
+    }
+
+    private static int[][] addBucket(int[][] buckets, int index, int[] bucket) {
+        if (buckets == null) {
+            buckets = new int[4][];
+        } else if (index == buckets.length) {
+            buckets = Arrays.copyOf(buckets, buckets.length * 2);
+        }
+
+        buckets[index] = bucket;
+        return buckets;
+    }
+
+    private static class IntList {
+        private int[] _values = new int[4];
+        private int _size;
+
+        void add(int value) {
+            if (_size == _values.length) {
+                _values = Arrays.copyOf(_values, _size * 2);
+            }
+            _values[_size++] = value;
+        }
+
+        int[] toArray() {
+            return _size == 0 ? EMPTY : Arrays.copyOf(_values, _size);
+        }
+    }
+}
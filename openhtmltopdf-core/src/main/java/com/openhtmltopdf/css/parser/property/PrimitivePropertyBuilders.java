@@ -1764,6 +1764,13 @@ public class PrimitivePropertyBuilders {
             return false;
         }
     }
+
+    public static class FSTableLayoutSampleRows extends PlainInteger {
+        @Override
+        protected boolean isNegativeValuesAllowed() {
+            return false;
+        }
+    }
     
     public static class FSOverflowPagesDirection extends SingleIdent {
         private static final BitSet ALLOWED = setFor(new IdentValue[] { IdentValue.LTR, IdentValue.RTL });
@@ -19,6 +19,7 @@
  */
 package com.openhtmltopdf.css.sheet;
 
+import com.openhtmltopdf.css.constants.CSSName;
 import com.openhtmltopdf.css.newmatch.CascadedStyle;
 import com.openhtmltopdf.css.style.CalculatedStyle;
 import com.openhtmltopdf.css.style.EmptyStyle;
@@ -39,6 +40,15 @@ public class FontFaceRule implements RulesetContainer {
             throw new XRRuntimeException("Ruleset can only be set once");
         }
         _ruleset = ruleset;
+        // Derived here, while parsing, as the rule may be shared between threads afterwards.
+        // Every value is resolved up front too, because CalculatedStyle fills in inherited
+        // and initial values lazily and would otherwise be written to by each render.
+        CalculatedStyle style = new EmptyStyle().deriveStyle(
+                CascadedStyle.createLayoutStyle(ruleset.getPropertyDeclarations()));
+        for (int i = 0; i < CSSName.countCSSPrimitiveNames(); i++) {
+            style.valueByName(CSSName.getByID(i));
+        }
+        _calculatedStyle = style;
     }
 
     @Override
@@ -51,11 +61,6 @@ public class FontFaceRule implements RulesetContainer {
     }
 
     public CalculatedStyle getCalculatedStyle() {
-        if (_calculatedStyle == null) {
-            _calculatedStyle = new EmptyStyle().deriveStyle(
-                    CascadedStyle.createLayoutStyle(_ruleset.getPropertyDeclarations()));
-        }
-
         return _calculatedStyle;
     }
     
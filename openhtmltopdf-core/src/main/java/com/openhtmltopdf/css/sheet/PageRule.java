@@ -36,7 +36,7 @@ public class PageRule implements RulesetContainer {
     private List<PropertyDeclaration> _footnoteArea = null;
 
     private int _pos;
-    
+
     private int _specificityF;
     private int _specificityG;
     private int _specificityH;
@@ -104,13 +104,25 @@ public class PageRule implements RulesetContainer {
         return _marginBoxes;
     }
     
+    /**
+     * @deprecated Rules are no longer ordered by position. Use {@link #getSpecificity()}
+     * with a stable sort.
+     */
+    @Deprecated
     public long getOrder() {
+        return getSpecificity() | _pos;
+    }
+
+    /**
+     * The specificity of the page selector, for sorting with a stable sort
+     * so rules of the same specificity stay in source order.
+     */
+    public long getSpecificity() {
         long result = 0;
         
         result |= (long)_specificityF << 32;
         result |= (long)_specificityG << 24;
         result |= (long)_specificityH << 16;
-        result |= _pos;
         
         return result;
     }
@@ -132,10 +144,18 @@ public class PageRule implements RulesetContainer {
         return false;
     }
 
+    /**
+     * @deprecated Rules are no longer ordered by position.
+     */
+    @Deprecated
     public int getPos() {
         return _pos;
     }
 
+    /**
+     * @deprecated Rules are no longer ordered by position.
+     */
+    @Deprecated
     public void setPos(int pos) {
         _pos = pos;
     }
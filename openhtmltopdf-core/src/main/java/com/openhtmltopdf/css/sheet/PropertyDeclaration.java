@@ -59,16 +59,19 @@ public class PropertyDeclaration {
      */
     private int origin;
     /**
-     * Description of the Field
+     * Set on first use. A single reference, rather than a value and a flag, so
+     * that declarations from a shared style sheet can be used by several renders
+     * at once: IdentValue is immutable, so a thread sees either null or the value.
      */
     private IdentValue _identVal;
+    
+    private String _fingerprint;
 
     /**
-     * Description of the Field
+     * Boxed so that it is safely published when declarations from a
+     * shared style sheet are used by several renders at once.
      */
-    private boolean identIsSet;
-    
-    private String _fingerprint;
+    private Long _fingerprintHash;
 
     /**
      * ImportanceAndOrigin of stylesheet - how many different
@@ -139,11 +142,12 @@ public class PropertyDeclaration {
      * @return Returns
      */
     public IdentValue asIdentValue() {
-        if (!identIsSet) {
-            _identVal = IdentValue.getByIdentString(cssPrimitiveValue.getCssText());
-            identIsSet = true;
+        IdentValue ident = _identVal;
+        if (ident == null) {
+            ident = IdentValue.getByIdentString(cssPrimitiveValue.getCssText());
+            _identVal = ident;
         }
-        return _identVal;
+        return ident;
     }
 
     public String getDeclarationStandardText() {
@@ -157,6 +161,29 @@ public class PropertyDeclaration {
         return _fingerprint;
     }
 
+    /**
+     * A 64-bit FNV-1a hash of {@link #getFingerprint()}. Equal fingerprints
+     * have equal hashes, but the reverse is only very likely.
+     */
+    public long getFingerprintHash() {
+        Long hash = _fingerprintHash;
+
+        if (hash == null) {
+            String fingerprint = getFingerprint();
+            long h = 0xcbf29ce484222325L;
+
+            for (int i = 0; i < fingerprint.length(); i++) {
+                h ^= fingerprint.charAt(i);
+                h *= 0x100000001b3L;
+            }
+
+            hash = h;
+            _fingerprintHash = hash;
+        }
+
+        return hash;
+    }
+
     /**
      * Returns an int representing the combined origin and importance of the
      * property as declared. The int is assigned such that default origin and
@@ -112,9 +112,21 @@ public class CalculatedStyle {
     private boolean _bordersAllowed = true;
 
     /**
-     * Cache child styles of this style that have the same cascaded properties
+     * Cache child styles of this style that have the same cascaded properties,
+     * keyed by {@link CascadedStyle#getFingerprintHash()}. Children of styles that
+     * are themselves shared, such as cells in different rows, share styles too.
      */
-    private final java.util.Map<String, CalculatedStyle> _childCache = new java.util.HashMap<>();
+    private final java.util.Map<Long, ChildStyle> _childCache = new java.util.HashMap<>();
+
+    private static class ChildStyle {
+        private final CascadedStyle matched;
+        private final CalculatedStyle style;
+
+        private ChildStyle(CascadedStyle matched, CalculatedStyle style) {
+            this.matched = matched;
+            this.style = style;
+        }
+    }
 
     /**
      * Our main array of property values defined in this style, keyed
@@ -202,12 +214,18 @@ public class CalculatedStyle {
      * @return The derived child style
      */
     public CalculatedStyle deriveStyle(CascadedStyle matched) {
-        String fingerprint = matched.getFingerprint();
-        CalculatedStyle cs = _childCache.get(fingerprint);
+        Long fingerprint = matched.getFingerprintHash();
+        ChildStyle cached = _childCache.get(fingerprint);
+        CalculatedStyle cs;
 
-        if (cs == null) {
+        if (cached == null) {
+            cs = new CalculatedStyle(this, matched);
+            _childCache.put(fingerprint, new ChildStyle(matched, cs));
+        } else if (cached.matched.hasSameDeclarations(matched)) {
+            cs = cached.style;
+        } else {
+            // Hash collision, vanishingly rare so not worth caching.
             cs = new CalculatedStyle(this, matched);
-            _childCache.put(fingerprint, cs);
         }
 
         RootCounterContext cc = ThreadCtx.get().sharedContext().getGlobalCounterContext();
@@ -1052,6 +1070,13 @@ public class CalculatedStyle {
         return (int) asFloat(CSSName.FS_MAX_OVERFLOW_PAGES);
     }
 
+    /**
+     * @return the number of body rows to measure for auto table layout, or zero for all rows.
+     */
+    public int fsTableLayoutSampleRows() {
+        return (int) asFloat(CSSName.FS_TABLE_LAYOUT_SAMPLE_ROWS);
+    }
+
 	/**
      * Determine if the element is visible. This is normaly the case
      * if visibility == visible. Only when visibilty is
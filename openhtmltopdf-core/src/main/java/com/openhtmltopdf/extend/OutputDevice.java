@@ -97,6 +97,34 @@ public interface OutputDevice {
      */
     public void drawWithGraphics(float x, float y, float width, float height, OutputDeviceGraphicsDrawer renderer);
 
+    /**
+     * Draw something using a Graphics2D at the given rectangle. Output devices may keep what
+     * was drawn and place it again, without calling the renderer, for later calls with
+     * an equal <code>key</code> and size in the same document. The key must therefore
+     * identify everything the renderer draws. If the renderer returns false nothing is
+     * kept or placed. The default ignores the key.
+     */
+    default public void drawWithGraphics(float x, float y, float width, float height, String key, OutputDeviceKeyedGraphicsDrawer renderer) {
+        drawWithGraphics(x, y, width, height, renderer::render);
+    }
+
+    /**
+     * Starts recording content, such as a page margin area, that is likely to be drawn
+     * the same on many pages, so that it can be output once and referred to from each page.
+     * If this returns true, it must be followed by {@link #endReusableContent()}.
+     * The default does not record and returns false.
+     */
+    default public boolean startReusableContent() {
+        return false;
+    }
+
+    /**
+     * Ends recording content started by {@link #startReusableContent()} and outputs it,
+     * or a reference to identical content output earlier in the document.
+     */
+    default public void endReusableContent() {
+    }
+
     public boolean isPDF();
 
     /**
@@ -0,0 +1,20 @@
+package com.openhtmltopdf.extend;
+
+import java.awt.Graphics2D;
+
+/**
+ * Render something on a Graphics2D on the OutputDevice, for drawings
+ * the output device may keep and place again.
+ *
+ * @see OutputDevice#drawWithGraphics(float, float, float, float, String, OutputDeviceKeyedGraphicsDrawer)
+ */
+@FunctionalInterface
+public interface OutputDeviceKeyedGraphicsDrawer {
+
+    /**
+     * Draw something using the given graphics.
+     * @param graphics2D the graphics you can use to draw
+     * @return false if drawing failed, in which case nothing is kept or placed.
+     */
+    public boolean render(Graphics2D graphics2D);
+}
@@ -0,0 +1,106 @@
+package com.openhtmltopdf.extend;
+
+/**
+ * Receives timings and counters for a render, set with
+ * {@link com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder#useRenderMetrics(RenderMetrics)}.
+ * <br><br>
+ * Values are collected while rendering and passed on once, when the render finishes
+ * (when the renderer is closed), so implementations are not called from hot code
+ * and can forward to a metrics library. For example with Micrometer:
+ * <pre>
+ * builder.useRenderMetrics(new RenderMetrics() {
+ *     public void stageCompleted(Stage stage, long nanos) {
+ *         registry.timer("pdf.render.stage", "stage", stage.name()).record(nanos, TimeUnit.NANOSECONDS);
+ *     }
+ *     public void counted(Counter counter, long value) {
+ *         registry.summary("pdf.render." + counter.name().toLowerCase(Locale.US)).record(value);
+ *     }
+ * });
+ * </pre>
+ * Stages and counters that did not occur during a render are not reported.
+ */
+public interface RenderMetrics {
+    /**
+     * Stage times are totals over the render. Some stages run inside others,
+     * as noted, so their times are not meant to be added up.
+     */
+    enum Stage {
+        /** Parsing XML/XHTML documents, including the main document. */
+        DOCUMENT_LOAD,
+
+        /** Parsing style sheets and style attributes. */
+        CSS_PARSE,
+
+        /** Matching elements against style rules. Happens during box building. */
+        CASCADE,
+
+        /** Creating boxes from elements. Happens lazily during layout. */
+        BOX_BUILD,
+
+        /** Layout and pagination, including box building and cascade. */
+        LAYOUT,
+
+        /** Collecting the paint instructions of each page. */
+        DISPLAY_LIST,
+
+        /** Painting pages to the output. */
+        PAINT,
+
+        /**
+         * Subsetting embedded fonts. Reported by output devices that subset fonts
+         * separately. With PDFBox, fonts are subset while saving so the time
+         * is part of {@link #SAVE} instead.
+         */
+        FONT_SUBSET,
+
+        /** Writing the finished document. */
+        SAVE
+    }
+
+    enum Counter {
+        /** Pages output, including shadow pages. */
+        PAGES,
+
+        /** Boxes in the laid out box tree. */
+        BOXES,
+
+        /** Runs of text drawn in a single font. */
+        TEXT_RUNS,
+
+        /** Runs of text drawn in a font other than the first font in the font-family list. */
+        FONT_FALLBACKS,
+
+        /** Bytes of image data loaded. */
+        IMAGE_BYTES,
+
+        /**
+         * Bytes of encoded image data not embedded again because an
+         * image drawn more than once was embedded once and then reused.
+         */
+        IMAGE_BYTES_DEDUPLICATED,
+
+        /**
+         * Drawings, such as SVG images and page margin areas, placed again from a form
+         * output earlier in the document instead of being output again.
+         */
+        GRAPHICS_REUSED,
+
+        /** Lookups answered by the font metrics, image or style sheet cache. */
+        CACHE_HITS,
+
+        /** Lookups not answered by the font metrics, image or style sheet cache. */
+        CACHE_MISSES
+    }
+
+    /**
+     * @param stage the stage.
+     * @param nanos the total time spent in the stage during the render, in nanoseconds.
+     */
+    void stageCompleted(Stage stage, long nanos);
+
+    /**
+     * @param counter the counter.
+     * @param value the total for the render.
+     */
+    void counted(Counter counter, long value);
+}
@@ -62,5 +62,15 @@ public interface TextRenderer {
      * Instead favor {@link Breaker} static method instead.
      */
     int getWidth(FontContext context, FSFont font, String string);
+
+    /**
+     * Gets the width of the characters of <code>string</code> from <code>start</code> (inclusive)
+     * to <code>end</code> (exclusive). Gives the same result as measuring the substring but
+     * implementations may override to measure in place without creating it.
+     * Rarely need to use this method directly.
+     */
+    default int getWidth(FontContext context, FSFont font, String string, int start, int end) {
+        return getWidth(context, font, string.substring(start, end));
+    }
 }
 
@@ -0,0 +1,223 @@
+package com.openhtmltopdf.extend.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * A thread safe cache implementation bounded by the total weight of its values, suitable
+ * for long running services. Properties:
+ * <ul>
+ * <li>Least recently used values are evicted once the total of {@link FSCacheValue#weight()}
+ * exceeds the maximum weight. Values that do not know their weight are counted
+ * as {@link #DEFAULT_VALUE_WEIGHT} bytes.</li>
+ * <li>{@link #get(String, Callable)} runs at most one loader per key at a time. Other
+ * threads asking for the same key wait for and share the result.</li>
+ * <li>Hit, miss, eviction and load time counters can be read with {@link #getStats()}.</li>
+ * </ul>
+ */
+public class FSBoundedCacheStore implements FSCacheEx<String, FSCacheValue> {
+    /**
+     * The weight in bytes used for values that return -1 from {@link FSCacheValue#weight()}.
+     */
+    public static final int DEFAULT_VALUE_WEIGHT = 1024;
+
+    private final long _maximumWeight;
+
+    /* Guarded by this. Access ordered so iteration starts at the least recently used. */
+    private final LinkedHashMap<String, WeightedValue> _store = new LinkedHashMap<>(16, 0.75f, true);
+    private long _totalWeight;
+
+    private final Map<String, CompletableFuture<FSCacheValue>> _loading = new ConcurrentHashMap<>();
+
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _loads = new LongAdder();
+    private final LongAdder _loadFailures = new LongAdder();
+    private final LongAdder _loadNanos = new LongAdder();
+
+    private static class WeightedValue {
+        final FSCacheValue value;
+        final int weight;
+
+        WeightedValue(FSCacheValue value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * @param maximumWeight the maximum total weight, in (very) approximate bytes, of values held.
+     */
+    public FSBoundedCacheStore(long maximumWeight) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Maximum weight must be positive");
+        }
+        this._maximumWeight = maximumWeight;
+    }
+
+    private static int weigh(FSCacheValue value) {
+        int weight = value.weight();
+        return weight < 0 ? DEFAULT_VALUE_WEIGHT : weight;
+    }
+
+    @Override
+    public void put(String key, FSCacheValue value) {
+        if (value == null) {
+            return;
+        }
+
+        int weight = weigh(value);
+
+        synchronized (this) {
+            WeightedValue old = _store.remove(key);
+            if (old != null) {
+                _totalWeight -= old.weight;
+            }
+
+            if (weight > _maximumWeight) {
+                // Would evict everything else and then itself.
+                return;
+            }
+
+            _store.put(key, new WeightedValue(value, weight));
+            _totalWeight += weight;
+
+            Iterator<WeightedValue> eldest = _store.values().iterator();
+            while (_totalWeight > _maximumWeight && eldest.hasNext()) {
+                _totalWeight -= eldest.next().weight;
+                eldest.remove();
+                _evictions.increment();
+            }
+        }
+    }
+
+    private synchronized FSCacheValue getIfPresent(String key) {
+        WeightedValue entry = _store.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    @Override
+    public FSCacheValue get(String key) {
+        FSCacheValue value = getIfPresent(key);
+        (value != null ? _hits : _misses).increment();
+        return value;
+    }
+
+    @Override
+    public FSCacheValue get(String key, Callable<? extends FSCacheValue> loader) {
+        FSCacheValue value = getIfPresent(key);
+
+        if (value != null) {
+            _hits.increment();
+            return value;
+        }
+
+        _misses.increment();
+
+        CompletableFuture<FSCacheValue> loading = new CompletableFuture<>();
+        CompletableFuture<FSCacheValue> inFlight = _loading.putIfAbsent(key, loading);
+
+        if (inFlight != null) {
+            // Another thread is already loading this key, share its result.
+            try {
+                return inFlight.join();
+            } catch (CompletionException | CancellationException e) {
+                return null;
+            }
+        }
+
+        try {
+            // Another thread may have finished loading between our lookup and
+            // registering as the loader.
+            value = getIfPresent(key);
+
+            if (value == null) {
+                value = load(key, loader);
+            }
+
+            loading.complete(value);
+            return value;
+        } catch (Throwable e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            _loading.remove(key, loading);
+        }
+    }
+
+    private FSCacheValue load(String key, Callable<? extends FSCacheValue> loader) {
+        FSCacheValue value;
+        long start = System.nanoTime();
+
+        try {
+            value = loader.call();
+        } catch (Exception e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_CACHE_VALUE_FOR_KEY, key, e);
+            value = null;
+        } finally {
+            _loadNanos.add(System.nanoTime() - start);
+            _loads.increment();
+        }
+
+        if (value != null) {
+            put(key, value);
+        } else {
+            _loadFailures.increment();
+        }
+
+        return value;
+    }
+
+    /**
+     * Removes all values. Counters are not reset.
+     */
+    public synchronized void clear() {
+        _store.clear();
+        _totalWeight = 0;
+    }
+
+    /**
+     * @return the number of values currently held.
+     */
+    public synchronized int size() {
+        return _store.size();
+    }
+
+    /**
+     * @return the total weight of values currently held.
+     */
+    public synchronized long getTotalWeight() {
+        return _totalWeight;
+    }
+
+    public long getMaximumWeight() {
+        return _maximumWeight;
+    }
+
+    /**
+     * @return a snapshot of the cache counters.
+     */
+    public FSCacheStats getStats() {
+        return new FSCacheStats(
+                _hits.sum(),
+                _misses.sum(),
+                _evictions.sum(),
+                _loads.sum(),
+                _loadFailures.sum(),
+                _loadNanos.sum());
+    }
+}
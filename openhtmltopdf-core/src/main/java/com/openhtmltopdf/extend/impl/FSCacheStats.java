@@ -0,0 +1,86 @@
+package com.openhtmltopdf.extend.impl;
+
+/**
+ * An immutable snapshot of the counters of a cache. All counts are since the
+ * cache was created.
+ */
+public class FSCacheStats {
+    private final long _hitCount;
+    private final long _missCount;
+    private final long _evictionCount;
+    private final long _loadCount;
+    private final long _loadFailureCount;
+    private final long _totalLoadTimeNanos;
+
+    public FSCacheStats(
+            long hitCount,
+            long missCount,
+            long evictionCount,
+            long loadCount,
+            long loadFailureCount,
+            long totalLoadTimeNanos) {
+        this._hitCount = hitCount;
+        this._missCount = missCount;
+        this._evictionCount = evictionCount;
+        this._loadCount = loadCount;
+        this._loadFailureCount = loadFailureCount;
+        this._totalLoadTimeNanos = totalLoadTimeNanos;
+    }
+
+    /**
+     * The number of lookups that found a value in the cache.
+     */
+    public long getHitCount() {
+        return _hitCount;
+    }
+
+    /**
+     * The number of lookups that did not find a value in the cache.
+     */
+    public long getMissCount() {
+        return _missCount;
+    }
+
+    /**
+     * The number of values removed to keep the cache within its bounds.
+     */
+    public long getEvictionCount() {
+        return _evictionCount;
+    }
+
+    /**
+     * The number of times a loader was run, successful or not.
+     */
+    public long getLoadCount() {
+        return _loadCount;
+    }
+
+    /**
+     * The number of times a loader threw an exception or returned null.
+     */
+    public long getLoadFailureCount() {
+        return _loadFailureCount;
+    }
+
+    /**
+     * The total time spent running loaders, in nanoseconds.
+     */
+    public long getTotalLoadTimeNanos() {
+        return _totalLoadTimeNanos;
+    }
+
+    /**
+     * @return the ratio of hits to lookups or 1.0 if there were no lookups.
+     */
+    public double getHitRate() {
+        long requests = _hitCount + _missCount;
+        return requests == 0 ? 1.0 : (double) _hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "FSCacheStats [hits=%d, misses=%d, evictions=%d, loads=%d, loadFailures=%d, totalLoadTimeNanos=%d]",
+                _hitCount, _missCount, _evictionCount, _loadCount, _loadFailureCount, _totalLoadTimeNanos);
+    }
+}
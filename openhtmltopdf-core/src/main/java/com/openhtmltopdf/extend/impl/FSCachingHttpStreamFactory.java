@@ -0,0 +1,376 @@
+package com.openhtmltopdf.extend.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * A thread safe <code>FSStreamFactory</code> for http and https suitable for long running
+ * services, to be registered with <code>useHttpStreamImplementation</code>. Properties:
+ * <ul>
+ * <li>Responses are read completely and closed so the JVM can reuse the keep-alive connection
+ * for the next request to the same host. The JVM keeps at most <code>http.maxConnections</code>
+ * (default 5) idle connections per host.</li>
+ * <li>Successful responses are kept in a cache, by default a {@link FSBoundedCacheStore}, honoring
+ * <code>Cache-Control</code> (<code>no-store</code>, <code>no-cache</code>, <code>max-age</code>)
+ * and <code>Expires</code>. Stale responses with an <code>ETag</code> or <code>Last-Modified</code>
+ * header are revalidated with a conditional request. Responses with a <code>Vary</code> header
+ * are not cached.</li>
+ * <li>At most <code>maxConnectionsPerHost</code> requests run at once to each host.</li>
+ * <li>Responses larger than <code>maxResponseBytes</code> are dropped.</li>
+ * </ul>
+ * Passing a cache to the constructor allows sharing it, and the responses in it, between factories.
+ */
+public class FSCachingHttpStreamFactory implements FSStreamFactory {
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10_000;
+    public static final int DEFAULT_READ_TIMEOUT = 30_000;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+    public static final int DEFAULT_MAX_RESPONSE_BYTES = 32 * 1024 * 1024;
+    public static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private final FSCacheEx<String, FSCacheValue> _cache;
+    private final int _connectTimeout;
+    private final int _readTimeout;
+    private final int _maxConnectionsPerHost;
+    private final int _maxResponseBytes;
+
+    private final Map<String, Semaphore> _hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * A cached response. Responses that must be revalidated before use have an
+     * <code>expires</code> time in the past.
+     */
+    private static class CachedResponse implements FSCacheValue {
+        final byte[] body;
+        final Charset charset;
+        final String etag;
+        final long lastModified;
+        final long expires;
+
+        CachedResponse(byte[] body, Charset charset, String etag, long lastModified, long expires) {
+            this.body = body;
+            this.charset = charset;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        boolean canRevalidate() {
+            return etag != null || lastModified != 0;
+        }
+
+        @Override
+        public int weight() {
+            return body.length;
+        }
+    }
+
+    private static class ResponseStream implements FSStream {
+        private final byte[] body;
+        private final Charset charset;
+
+        ResponseStream(byte[] body, Charset charset) {
+            this.body = body;
+            this.charset = charset;
+        }
+
+        @Override
+        public InputStream getStream() {
+            return body != null ? new ByteArrayInputStream(body) : null;
+        }
+
+        @Override
+        public Reader getReader() {
+            return body != null ? new InputStreamReader(getStream(), charset) : null;
+        }
+    }
+
+    private static final FSStream FAILED = new ResponseStream(null, StandardCharsets.UTF_8);
+
+    /**
+     * Create a factory with a {@link FSBoundedCacheStore} of {@link #DEFAULT_CACHE_BYTES}
+     * and default timeouts and limits.
+     */
+    public FSCachingHttpStreamFactory() {
+        this(new FSBoundedCacheStore(DEFAULT_CACHE_BYTES));
+    }
+
+    /**
+     * Create a factory using the given response cache and default timeouts and limits.
+     */
+    public FSCachingHttpStreamFactory(FSCacheEx<String, FSCacheValue> cache) {
+        this(cache, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT,
+             DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_RESPONSE_BYTES);
+    }
+
+    /**
+     * @param cache the response cache, keyed by uri.
+     * @param connectTimeout connect timeout in milliseconds, zero for no timeout.
+     * @param readTimeout read timeout in milliseconds, zero for no timeout.
+     * @param maxConnectionsPerHost the maximum number of requests to run at once to each host.
+     * @param maxResponseBytes the maximum size of a response body.
+     */
+    public FSCachingHttpStreamFactory(
+            FSCacheEx<String, FSCacheValue> cache,
+            int connectTimeout,
+            int readTimeout,
+            int maxConnectionsPerHost,
+            int maxResponseBytes) {
+        if (maxConnectionsPerHost <= 0) {
+            throw new IllegalArgumentException("Maximum connections per host must be positive");
+        }
+        if (maxResponseBytes <= 0) {
+            throw new IllegalArgumentException("Maximum response size must be positive");
+        }
+
+        this._cache = cache;
+        this._connectTimeout = connectTimeout;
+        this._readTimeout = readTimeout;
+        this._maxConnectionsPerHost = maxConnectionsPerHost;
+        this._maxResponseBytes = maxResponseBytes;
+    }
+
+    @Override
+    public FSStream getUrl(String uri) {
+        FSCacheValue value = _cache.get(uri);
+        CachedResponse cached = value instanceof CachedResponse ? (CachedResponse) value : null;
+
+        if (cached != null && cached.expires > System.currentTimeMillis()) {
+            return new ResponseStream(cached.body, cached.charset);
+        }
+
+        URL url;
+        try {
+            url = new URL(uri);
+        } catch (MalformedURLException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_MALFORMED_URL, uri, e);
+            return FAILED;
+        }
+
+        Semaphore permits = _hostPermits.computeIfAbsent(
+                url.getHost() + ':' + (url.getPort() != -1 ? url.getPort() : url.getDefaultPort()),
+                host -> new Semaphore(_maxConnectionsPerHost));
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FAILED;
+        }
+
+        try {
+            CachedResponse response = request(uri, url, cached);
+            return response != null ? new ResponseStream(response.body, response.charset) : FAILED;
+        } catch (IOException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_IO_PROBLEM_FOR_URI, uri, e);
+            return FAILED;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private CachedResponse request(String uri, URL url, CachedResponse cached) throws IOException {
+        URLConnection conn = url.openConnection();
+        conn.setConnectTimeout(_connectTimeout);
+        conn.setReadTimeout(_readTimeout);
+        // We are the cache, don't also use any JVM wide ResponseCache.
+        conn.setUseCaches(false);
+
+        if (cached != null && cached.etag != null) {
+            conn.setRequestProperty("If-None-Match", cached.etag);
+        }
+        if (cached != null && cached.lastModified != 0) {
+            conn.setIfModifiedSince(cached.lastModified);
+        }
+
+        if (!(conn instanceof HttpURLConnection)) {
+            // Registered for a protocol other than http(s), nothing we can cache.
+            try (InputStream is = conn.getInputStream()) {
+                return new CachedResponse(read(uri, is, conn.getContentLengthLong()), charset(conn), null, 0, 0);
+            }
+        }
+
+        HttpURLConnection http = (HttpURLConnection) conn;
+        int status = http.getResponseCode();
+
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            drain(http.getInputStream());
+            CachedResponse revalidated = new CachedResponse(
+                    cached.body,
+                    cached.charset,
+                    http.getHeaderField("ETag") != null ? http.getHeaderField("ETag") : cached.etag,
+                    http.getLastModified() != 0 ? http.getLastModified() : cached.lastModified,
+                    expires(http));
+            if (isStorable(http)) {
+                _cache.put(uri, revalidated);
+            }
+            return revalidated;
+        }
+
+        if (status != HttpURLConnection.HTTP_OK) {
+            drain(http.getErrorStream());
+
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_ITEM_AT_URI_NOT_FOUND, uri);
+            } else {
+                XRLog.log(Level.WARNING, LogMessageId.LogMessageId2Param.LOAD_UNEXPECTED_HTTP_STATUS_FOR_URI, status, uri);
+            }
+            return null;
+        }
+
+        byte[] body;
+        try (InputStream is = http.getInputStream()) {
+            body = read(uri, is, http.getContentLengthLong());
+        }
+
+        if (body == null) {
+            // Closing the connection with data unread would leave it unusable anyway.
+            http.disconnect();
+            return null;
+        }
+
+        CachedResponse response = new CachedResponse(
+                body, charset(http), http.getHeaderField("ETag"), http.getLastModified(), expires(http));
+
+        if (isStorable(http) &&
+            (response.expires > System.currentTimeMillis() || response.canRevalidate())) {
+            _cache.put(uri, response);
+        }
+
+        return response;
+    }
+
+    /**
+     * Reads the body, or returns null if it is over the size limit.
+     */
+    private byte[] read(String uri, InputStream is, long contentLength) throws IOException {
+        if (contentLength > _maxResponseBytes) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId2Param.LOAD_HTTP_RESPONSE_LARGER_THAN_LIMIT, uri, _maxResponseBytes);
+            return null;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : 8192);
+        byte[] buf = new byte[8192];
+        int n;
+
+        while ((n = is.read(buf)) != -1) {
+            if (out.size() + n > _maxResponseBytes) {
+                XRLog.log(Level.WARNING, LogMessageId.LogMessageId2Param.LOAD_HTTP_RESPONSE_LARGER_THAN_LIMIT, uri, _maxResponseBytes);
+                return null;
+            }
+            out.write(buf, 0, n);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads and closes a response body so the connection can be reused.
+     */
+    private static void drain(InputStream is) throws IOException {
+        if (is == null) {
+            return;
+        }
+
+        try (InputStream in = is) {
+            byte[] buf = new byte[1024];
+            while (in.read(buf) != -1) {
+                // Discard.
+            }
+        }
+    }
+
+    private static List<String> cacheControlDirectives(HttpURLConnection http) {
+        String cacheControl = http.getHeaderField("Cache-Control");
+
+        if (cacheControl == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> directives = new ArrayList<>();
+        for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+            directives.add(directive.trim());
+        }
+        return directives;
+    }
+
+    /**
+     * Whether the response may be kept. Responses with a <code>Vary</code> header are not,
+     * as they are cached by uri only and could be served for requests they do not match.
+     */
+    private static boolean isStorable(HttpURLConnection http) {
+        return http.getHeaderField("Vary") == null &&
+               !cacheControlDirectives(http).contains("no-store");
+    }
+
+    /**
+     * @return the time until which a response may be used without revalidating, or zero if
+     * it must be revalidated on each use. <code>no-cache</code> and <code>no-store</code>
+     * win over <code>max-age</code> wherever they appear in the header.
+     */
+    private static long expires(HttpURLConnection http) {
+        long maxAge = -1;
+
+        for (String directive : cacheControlDirectives(http)) {
+            if (directive.equals("no-store") || directive.startsWith("no-cache")) {
+                return 0;
+            } else if (directive.startsWith("max-age=")) {
+                try {
+                    maxAge = Long.parseLong(directive.substring("max-age=".length()).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        if (maxAge >= 0) {
+            return System.currentTimeMillis() + maxAge * 1000;
+        }
+
+        return http.getExpiration();
+    }
+
+    private static Charset charset(URLConnection conn) {
+        String contentType = conn.getContentType();
+
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                param = param.trim();
+
+                if (param.toLowerCase(Locale.US).startsWith("charset=")) {
+                    try {
+                        return Charset.forName(param.substring("charset=".length()).replace("\"", "").trim());
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+}
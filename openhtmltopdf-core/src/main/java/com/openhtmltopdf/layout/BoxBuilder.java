@@ -53,6 +53,7 @@ import com.openhtmltopdf.css.sheet.StylesheetInfo;
 import com.openhtmltopdf.css.style.CalculatedStyle;
 import com.openhtmltopdf.css.style.EmptyStyle;
 import com.openhtmltopdf.css.style.FSDerivedValue;
+import com.openhtmltopdf.extend.RenderMetrics.Stage;
 import com.openhtmltopdf.layout.counter.AbstractCounterContext;
 import com.openhtmltopdf.layout.counter.RootCounterContext;
 import com.openhtmltopdf.newtable.TableBox;
@@ -68,6 +69,7 @@ import com.openhtmltopdf.render.FlowingColumnBox;
 import com.openhtmltopdf.render.FlowingColumnContainerBox;
 import com.openhtmltopdf.render.InlineBox;
 import com.openhtmltopdf.util.OpenUtil;
+import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 import com.openhtmltopdf.util.LogMessageId;
 
@@ -125,6 +127,16 @@ public class BoxBuilder {
     }
 
     public static void createChildren(LayoutContext c, BlockBox parent) {
+        long start = ThreadCtx.metrics().startStage(Stage.BOX_BUILD);
+
+        try {
+            createChildrenOfBlock(c, parent);
+        } finally {
+            ThreadCtx.metrics().endStage(Stage.BOX_BUILD, start);
+        }
+    }
+
+    private static void createChildrenOfBlock(LayoutContext c, BlockBox parent) {
         if (parent.shouldBeReplaced()) {
             // Don't create boxes for elements in a SVG element.
             // This avoids many warnings and improves performance.
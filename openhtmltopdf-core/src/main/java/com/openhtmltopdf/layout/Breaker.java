@@ -322,8 +322,8 @@ public class Breaker {
                     ? style.getFloatPropertyProportionalWidth(CSSName.LETTER_SPACING, 0, c)
                     : 0f;
 
-            ToIntFunction<String> measurer = (str) ->
-                   c.getTextRenderer().getWidth(c.getFontContext(), font, str);
+            TextRangeMeasurer measurer = (str, start, end) ->
+                   c.getTextRenderer().getWidth(c.getFontContext(), font, str, start, end);
 
             String currentString = context.getStartSubstring();
             FSTextBreaker lineIterator = STANDARD_LINE_BREAKER.getBreaker(currentString, c.getSharedContext());
@@ -333,6 +333,30 @@ public class Breaker {
         }
     }
 
+    /**
+     * Measures the width of a range of a string, so that the breaker need not
+     * create a substring for each break opportunity it tries.
+     */
+    @FunctionalInterface
+    interface TextRangeMeasurer {
+        int measure(String str, int start, int end);
+    }
+
+    private static TextRangeMeasurer toRangeMeasurer(ToIntFunction<String> measurer) {
+        return (str, start, end) -> measurer.applyAsInt(str.substring(start, end));
+    }
+
+    static LineBreakResult doBreakCharacters(
+            String currentString,
+            FSTextBreaker lineIterator,
+            FSTextBreaker charIterator,
+            LineBreakContext context,
+            int avail,
+            float letterSpacing,
+            ToIntFunction<String> measurer) {
+        return doBreakCharacters(currentString, lineIterator, charIterator, context, avail, letterSpacing, toRangeMeasurer(measurer));
+    }
+
     /**
      * Breaks at most one word (until the next word break) going character by character to see
      * what will fit in.
@@ -344,7 +368,7 @@ public class Breaker {
             LineBreakContext context,
             int avail,
             float letterSpacing,
-            ToIntFunction<String> measurer) {
+            TextRangeMeasurer measurer) {
 
         // The next word break opportunity. We don't want to go past this
         // because we want to resume (if possible) normal word breaking after this
@@ -382,10 +406,9 @@ public class Breaker {
         while (nextCharBreak >= 0 &&
                nextCharBreak <= nextWordBreak &&
                graphicsLength < avail) {
-            String subString = currentString.substring(left, nextCharBreak);
             float extraSpacing = (nextCharBreak - left) * letterSpacing;
             
-            int splitWidth = (int) (measurer.applyAsInt(subString) + extraSpacing);
+            int splitWidth = (int) (measurer.measure(currentString, left, nextCharBreak) + extraSpacing);
             
             lastGoodWrap = left;
             left = nextCharBreak;
@@ -427,7 +450,7 @@ public class Breaker {
             nextCharBreak = nextWordBreak;
             
             float extraSpacing = (nextCharBreak - left) * letterSpacing;
-            int splitWidth = (int) (measurer.applyAsInt(currentString.substring(left, nextCharBreak)) + extraSpacing);
+            int splitWidth = (int) (measurer.measure(currentString, left, nextCharBreak) + extraSpacing);
 
             graphicsLength += splitWidth;
         }
@@ -471,7 +494,7 @@ public class Breaker {
             // Not even one character fit!
             int end = 1;
             float extraSpacing = letterSpacing;
-            int splitWidth = (int) (measurer.applyAsInt(currentString.substring(0, end)) + extraSpacing); 
+            int splitWidth = (int) (measurer.measure(currentString, 0, end) + extraSpacing); 
 
             context.setUnbreakable(true);
             context.setEnd(end + context.getStart());
@@ -522,8 +545,8 @@ public class Breaker {
                 ? style.getFloatPropertyProportionalWidth(CSSName.LETTER_SPACING, 0, c)
                 : 0f;
 
-        ToIntFunction<String> measurer = (str) ->
-               c.getTextRenderer().getWidth(c.getFontContext(), font, str);
+        TextRangeMeasurer measurer = (str, start, end) ->
+               c.getTextRenderer().getWidth(c.getFontContext(), font, str, start, end);
 
         String currentString = context.getStartSubstring();
         FSTextBreaker lineIterator = lineBreaker.getBreaker(currentString, c.getSharedContext());
@@ -538,6 +561,16 @@ public class Breaker {
             FSTextBreaker iterator,
             float letterSpacing,
             ToIntFunction<String> measurer) {
+        return doBreakTextWords(currentString, context, avail, iterator, letterSpacing, toRangeMeasurer(measurer));
+    }
+
+    static LineBreakResult doBreakTextWords(
+            String currentString,
+            LineBreakContext context,
+            int avail,
+            FSTextBreaker iterator,
+            float letterSpacing,
+            TextRangeMeasurer measurer) {
 
         int lastWrap = 0;
         
@@ -554,15 +587,15 @@ public class Breaker {
         while (current.right > 0 && current.graphicsLength <= avail) {
             current.copyTo(prev);
             
-            String subString = currentString.substring(current.left, current.right);
             float extraSpacing = (current.right - current.left) * letterSpacing;
             
-            int normalSplitWidth = (int) (measurer.applyAsInt(subString) + extraSpacing);
+            int normalSplitWidth = (int) (measurer.measure(currentString, current.left, current.right) + extraSpacing);
 
             if (currentString.charAt(current.right - 1) == SOFT_HYPHEN) {
                 current.isSoftHyphenBreak = true;
+                String withHyphen = currentString.substring(current.left, current.right) + '-';
                 int withTrailingHyphenSplitWidth = (int)
-                     (measurer.applyAsInt(subString + '-') + 
+                     (measurer.measure(withHyphen, 0, withHyphen.length()) + 
                         extraSpacing + letterSpacing);
                 current.withHyphenGraphicsLength = current.graphicsLength + withTrailingHyphenSplitWidth;
                 
@@ -592,8 +625,8 @@ public class Breaker {
             current.copyTo(prev);
             current.right = currentString.length();
             float extraSpacing = (current.right - current.left) * letterSpacing;
-            int splitWidth = (int) (measurer.applyAsInt(
-                    currentString.substring(current.left)) + extraSpacing);
+            int splitWidth = (int) (measurer.measure(
+                    currentString, current.left, currentString.length()) + extraSpacing);
             current.graphicsLength += splitWidth;
             nextUnfittableSplitWidth = splitWidth;
         }
@@ -635,7 +668,7 @@ public class Breaker {
             } else if (current.left == currentString.length()) {
                 String text = context.getCalculatedSubstring();
                 float extraSpacing = text.length() * letterSpacing;
-                context.setWidth((int) (measurer.applyAsInt(text) + extraSpacing));
+                context.setWidth((int) (measurer.measure(text, 0, text.length()) + extraSpacing));
             } else {
                 context.setWidth(current.graphicsLength);
             }
@@ -1239,10 +1239,21 @@ public class TableBox extends BlockBox {
         private void recalcColumn(LayoutContext c, int effCol) {
             Layout l = _layoutStruct[effCol];
 
+            // With -fs-table-layout-sample-rows only the first body rows are measured,
+            // so a very long table does not measure the content of every cell.
+            int sampleRows = _table.getStyle().fsTableLayoutSampleRows();
+            int bodyRowsLeft = sampleRows;
+
             // first we iterate over all rows.
             for (Iterator<TableSectionBox> j = _table.getChildIteratorOfType(TableSectionBox.class); j.hasNext();) {
                 TableSectionBox section = j.next();
                 int numRows = section.numRows();
+
+                if (sampleRows > 0 && !section.isHeader() && !section.isFooter()) {
+                    numRows = Math.min(numRows, bodyRowsLeft);
+                    bodyRowsLeft -= numRows;
+                }
+
                 for (int i = 0; i < numRows; i++) {
                     TableCellBox cell = section.cellAt(i, effCol);
                     if (cell == TableCellBox.SPANNING_CELL || cell == null) {
@@ -70,6 +70,7 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 		public String _preferredTransformerFactoryImplementationClass = "com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl";
 		public String _preferredDocumentBuilderFactoryImplementationClass = "com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl";
 		public Consumer<Diagnostic> _diagnosticConsumer;
+		public RenderMetrics _renderMetrics;
     }
 
 	protected final TBaseRendererBuilderState state;
@@ -156,6 +157,9 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 	 * Provides an HttpStreamFactory implementation if the user desires to use an
 	 * external HTTP/HTTPS implementation. Uses URL::openStream by default.
 	 * 
+	 * For services that render many documents from the same servers, consider
+	 * {@link com.openhtmltopdf.extend.impl.FSCachingHttpStreamFactory}, shared between renders.
+	 * 
 	 * @see #useProtocolsStreamImplementation(FSStreamFactory, String[])
 	 *
 	 * @param factory the factory to use for HTTP/HTTPS
@@ -587,8 +591,33 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 		return (TFinalClass) this;
 	}
 
+	/**
+	 * Receive stage timings and counters, such as pages and boxes, for each render.
+	 * Values are reported once at the end of each render. See {@link RenderMetrics}.
+	 *
+	 * @param metrics receiver of render metrics, or null for none (the default).
+	 * @return this for method chaining
+	 */
+	public TFinalClass useRenderMetrics(RenderMetrics metrics) {
+		state._renderMetrics = metrics;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Registers the diagnostic consumer and render metrics with the current thread.
+	 * Closing the returned object removes them and reports the render metrics.
+	 */
 	protected Closeable applyDiagnosticConsumer() {
-		return ThreadCtx.applyDiagnosticConsumer(state._diagnosticConsumer);
+		Closeable diagnostics = ThreadCtx.applyDiagnosticConsumer(state._diagnosticConsumer);
+		Closeable metrics = ThreadCtx.applyRenderMetrics(state._renderMetrics);
+
+		return () -> {
+			try {
+				diagnostics.close();
+			} finally {
+				metrics.close();
+			}
+		};
 	}
 
     /**
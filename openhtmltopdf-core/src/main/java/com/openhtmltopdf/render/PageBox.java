@@ -46,6 +46,7 @@ import com.openhtmltopdf.layout.Layer;
 import com.openhtmltopdf.layout.LayoutContext;
 import com.openhtmltopdf.newtable.TableBox;
 import com.openhtmltopdf.render.simplepainter.SimplePainter;
+import com.openhtmltopdf.render.simplepainter.SimplePainter.ContentFilter;
 import com.openhtmltopdf.util.ThreadCtx;
 
 public class PageBox {
@@ -478,9 +479,8 @@ public class PageBox {
                 c.getOutputDevice().translate(p.x, p.y);
 
                     table.getLayer().propagateCurrentTransformationMatrix(c);
-                    SimplePainter painter = new SimplePainter(p.x, p.y);
                     Object token = c.getOutputDevice().startStructure(StructureType.RUNNING, table);
-                    painter.paintLayer(c, table.getLayer());
+                    paintMarginArea(c, table, p);
                     c.getOutputDevice().endStructure(token);
 
                 c.getOutputDevice().translate(-p.x, -p.y);
@@ -489,6 +489,104 @@ public class PageBox {
         currentMarginAreaContainer = null;
     }
 
+    /**
+     * Margin areas are often the same on every page apart from lines with
+     * dynamic functions such as <code>counter(page)</code>. So, where the output device
+     * supports it, we paint the rest as reusable content and those lines on top.
+     */
+    private void paintMarginArea(RenderingContext c, TableBox table, Point p) {
+        DynamicLines dynamic = findDynamicLines(table);
+
+        if (dynamic != DynamicLines.INSEPARABLE &&
+            !hasTransformedLayer(table.getLayer()) &&
+            c.getOutputDevice().startReusableContent()) {
+            new SimplePainter(p.x, p.y, ContentFilter.STATIC).paintLayer(c, table.getLayer());
+            c.getOutputDevice().endReusableContent();
+
+            if (dynamic == DynamicLines.SEPARABLE) {
+                new SimplePainter(p.x, p.y, ContentFilter.DYNAMIC).paintLayer(c, table.getLayer());
+            }
+        } else {
+            new SimplePainter(p.x, p.y).paintLayer(c, table.getLayer());
+        }
+    }
+
+    /**
+     * Transforms are applied relative to the page, so we leave margin areas
+     * with transformed layers to be painted directly on each page.
+     */
+    private static boolean hasTransformedLayer(Layer layer) {
+        if (layer.hasLocalTransform()) {
+            return true;
+        }
+
+        for (Layer child : layer.getChildren()) {
+            if (hasTransformedLayer(child)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private enum DynamicLines {
+        /** No lines with dynamic functions. */
+        NONE,
+        /** Lines with dynamic functions containing only text, so they can be painted apart. */
+        SEPARABLE,
+        /** Lines with dynamic functions that also contain boxes, such as inline-blocks. */
+        INSEPARABLE
+    }
+
+    private static DynamicLines findDynamicLines(Box box) {
+        if (box instanceof LineBox && ((LineBox) box).isContainsDynamicFunction()) {
+            LineBox line = (LineBox) box;
+
+            if (!line.getNonFlowContent().isEmpty()) {
+                return DynamicLines.INSEPARABLE;
+            }
+
+            for (int i = 0; i < line.getChildCount(); i++) {
+                if (!(line.getChild(i) instanceof InlineLayoutBox) ||
+                    !isTextOnly((InlineLayoutBox) line.getChild(i))) {
+                    return DynamicLines.INSEPARABLE;
+                }
+            }
+
+            return DynamicLines.SEPARABLE;
+        }
+
+        DynamicLines result = DynamicLines.NONE;
+
+        for (int i = 0; i < box.getChildCount(); i++) {
+            DynamicLines child = findDynamicLines(box.getChild(i));
+
+            if (child == DynamicLines.INSEPARABLE) {
+                return child;
+            } else if (child == DynamicLines.SEPARABLE) {
+                result = child;
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isTextOnly(InlineLayoutBox inline) {
+        for (int i = 0; i < inline.getInlineChildCount(); i++) {
+            Object child = inline.getInlineChild(i);
+
+            if (child instanceof InlineLayoutBox) {
+                if (!isTextOnly((InlineLayoutBox) child)) {
+                    return false;
+                }
+            } else if (!(child instanceof InlineText)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     public MarginBoxName[] getCurrentMarginBoxNames() {
         if( currentMarginAreaContainer == null )
             return null;
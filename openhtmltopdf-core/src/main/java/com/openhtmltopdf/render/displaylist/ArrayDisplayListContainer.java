@@ -25,6 +25,11 @@ public class ArrayDisplayListContainer extends DisplayListContainer {
         return this.pageInstructions.get(pg - this.startPage);
     }
     
+    @Override
+    public void discardPageInstructions(int pg) {
+        this.pageInstructions.set(pg - this.startPage, null);
+    }
+
     @Override
     public int getMinPage() {
         return this.startPage;
@@ -62,6 +62,15 @@ public abstract class DisplayListContainer {
 	}
 	
 	public abstract DisplayListPageContainer getPageInstructions(int pg);
+
+	/**
+	 * Drops the instructions for a page once it has been painted so they can be
+	 * garbage collected. The page must not be requested again.
+	 * The default implementation keeps the instructions.
+	 */
+	public void discardPageInstructions(int pg) {
+	}
+
 	public abstract int getMinPage();
 	public abstract int getMaxPage();
 }
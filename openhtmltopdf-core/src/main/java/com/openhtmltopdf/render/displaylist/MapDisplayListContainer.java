@@ -27,6 +27,11 @@ public class MapDisplayListContainer extends DisplayListContainer {
         return pgInstructions;
     }
 
+    @Override
+    public void discardPageInstructions(int pg) {
+        this.pages.remove(pg);
+    }
+
     @Override
     public int getMinPage() {
         return 0;
@@ -13,6 +13,7 @@ import com.openhtmltopdf.newtable.TableCellBox;
 import com.openhtmltopdf.render.BlockBox;
 import com.openhtmltopdf.render.Box;
 import com.openhtmltopdf.render.DisplayListItem;
+import com.openhtmltopdf.render.LineBox;
 import com.openhtmltopdf.render.OperatorClip;
 import com.openhtmltopdf.render.OperatorSetClip;
 import com.openhtmltopdf.render.RenderingContext;
@@ -20,12 +21,31 @@ import com.openhtmltopdf.render.displaylist.DisplayListCollector;
 import com.openhtmltopdf.render.displaylist.TransformCreator;
 
 public class SimplePainter {
+    /**
+     * Which content to paint. Lines with dynamic functions such as <code>counter(page)</code>
+     * differ from page to page, so they may be painted separately from the content around them.
+     */
+    public enum ContentFilter {
+        /** Everything. */
+        ALL,
+        /** Everything but lines containing dynamic functions. */
+        STATIC,
+        /** Only the inline content of lines containing dynamic functions. */
+        DYNAMIC
+    }
+
     private final int xTranslate;
     private final int yTranslate;
+    private final ContentFilter filter;
     
     public SimplePainter(int xtrans, int ytrans) {
+        this(xtrans, ytrans, ContentFilter.ALL);
+    }
+
+    public SimplePainter(int xtrans, int ytrans, ContentFilter filter) {
         this.xTranslate = xtrans;
         this.yTranslate = ytrans;
+        this.filter = filter;
     }
     
     private void debugOnly(String msg, Object arg) {
@@ -49,13 +69,15 @@ public class SimplePainter {
         }
         
         if (((BlockBox) master).isReplaced()) {
-            paintLayerBackgroundAndBorder(c, master);
-            paintReplacedElement(c, (BlockBox) master);
+            if (filter != ContentFilter.DYNAMIC) {
+                paintLayerBackgroundAndBorder(c, master);
+                paintReplacedElement(c, (BlockBox) master);
+            }
         } else {
             SimpleBoxCollector boxCollector = new SimpleBoxCollector();
             boxCollector.collect(c, layer);
             
-            if (master instanceof BlockBox) {
+            if (master instanceof BlockBox && filter != ContentFilter.DYNAMIC) {
                 paintLayerBackgroundAndBorder(c, master);
             }
 
@@ -112,7 +134,7 @@ public class SimplePainter {
             } else if (dli instanceof OperatorSetClip) {
                 OperatorSetClip setClip = (OperatorSetClip) dli;
                 setClip(c, setClip);
-            } else {
+            } else if (filter != ContentFilter.DYNAMIC) {
                 BlockBox box = (BlockBox) dli;
                 
                 debugOnly("painting bg", box);
@@ -145,7 +167,7 @@ public class SimplePainter {
             } else if (dli instanceof OperatorSetClip) {
                 OperatorSetClip setClip = (OperatorSetClip) dli;
                 setClip(c, setClip);
-            } else {
+            } else if (filter != ContentFilter.DYNAMIC) {
                 debugOnly("Painting list item", dli);
                 ((BlockBox) dli).paintListMarker(c);
             }
@@ -164,7 +186,8 @@ public class SimplePainter {
                 // Inline blocks need to be painted as a layer.
                 BlockBox bb = (BlockBox) dli;
                 paintAsLayer(c, bb);
-            } else {
+            } else if (filter == ContentFilter.ALL ||
+                       (filter == ContentFilter.DYNAMIC) == isInDynamicLine((Box) dli)) {
                 InlinePaintable paintable = (InlinePaintable) dli;
                 debugOnly("Painting Inline", paintable);
                 paintable.paintInline(c);
@@ -173,6 +196,18 @@ public class SimplePainter {
         
     }
     
+    /**
+     * Whether an inline box is, or is in, a line containing dynamic functions.
+     */
+    private static boolean isInDynamicLine(Box inline) {
+        for (Box box = inline; box != null; box = box.getParent()) {
+            if (box instanceof LineBox) {
+                return ((LineBox) box).isContainsDynamicFunction();
+            }
+        }
+        return false;
+    }
+
     private void paintReplacedElement(RenderingContext c, BlockBox replaced) {
         
         Rectangle contentBounds = replaced.getContentAreaEdge(
@@ -196,7 +231,7 @@ public class SimplePainter {
             } else if (dli instanceof OperatorSetClip) {
                 OperatorSetClip setClip = (OperatorSetClip) dli;
                 setClip(c, setClip);
-            } else {
+            } else if (filter != ContentFilter.DYNAMIC) {
                 BlockBox box = (BlockBox) dli;
                 paintReplacedElement(c, box);
             }
@@ -36,6 +36,7 @@ import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.sax.SAXSource;
 
+import com.openhtmltopdf.extend.RenderMetrics.Stage;
 import com.openhtmltopdf.util.*;
 
 import org.w3c.dom.Document;
@@ -65,29 +66,41 @@ public class XMLResource extends AbstractResource {
     }
 
     public static XMLResource load(InputStream stream) {
+        long start = ThreadCtx.metrics().startStage(Stage.DOCUMENT_LOAD);
+
         try (XMLResource resource = new XMLResource(stream)) {
             return XML_RESOURCE_BUILDER.createXMLResource(resource);
         } catch (IOException e) {
             // Thrown on close failure.
             return null;
+        } finally {
+            ThreadCtx.metrics().endStage(Stage.DOCUMENT_LOAD, start);
         }
     }
 
     public static XMLResource load(InputSource source) {
+        long start = ThreadCtx.metrics().startStage(Stage.DOCUMENT_LOAD);
+
         try (XMLResource resource = new XMLResource(source)) {
             return XML_RESOURCE_BUILDER.createXMLResource(resource);
         } catch (IOException e) {
             // Thrown on close failure.
             return null;
+        } finally {
+            ThreadCtx.metrics().endStage(Stage.DOCUMENT_LOAD, start);
         }
     }
 
     public static XMLResource load(Reader reader) {
+        long start = ThreadCtx.metrics().startStage(Stage.DOCUMENT_LOAD);
+
         try (XMLResource resource = new XMLResource(new InputSource(reader))) {
             return XML_RESOURCE_BUILDER.createXMLResource(resource);
         } catch (IOException e) {
             // Thrown on close failure.
             return null;
+        } finally {
+            ThreadCtx.metrics().endStage(Stage.DOCUMENT_LOAD, start);
         }
     }
 
@@ -30,12 +30,29 @@ import java.util.Base64;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.BiPredicate;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.constants.IdentValue;
+import com.openhtmltopdf.css.sheet.FontFaceRule;
+import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.css.style.FSDerivedValue;
 import com.openhtmltopdf.event.DocumentListener;
+import com.openhtmltopdf.extend.NamespaceHandler;
 import com.openhtmltopdf.extend.FSUriResolver;
 import com.openhtmltopdf.extend.FSStreamFactory;
 import com.openhtmltopdf.extend.FSStream;
@@ -58,7 +75,7 @@ import com.openhtmltopdf.util.XRLog;
  *
  * @author Torbjoern Gannholm
  */
-public abstract class NaiveUserAgent implements UserAgentCallback, DocumentListener {
+public abstract class NaiveUserAgent implements UserAgentCallback, DocumentListener, Closeable {
 
     /**
      * a (simple) cache
@@ -72,6 +89,10 @@ public abstract class NaiveUserAgent implements UserAgentCallback, DocumentListe
     protected FSUriResolver _resolver = DEFAULT_URI_RESOLVER;
     protected String _baseUri;
 	protected Map<String, FSStreamFactory> _protocolsStreamFactory = new HashMap<>(2);
+
+    // Resources being fetched on other threads ahead of use, keyed by resolved uri. The
+    // content is a String for resources read as text and a byte array otherwise.
+    private final Map<String, Future<Object>> _prefetched = new HashMap<>();
     
     public static class DefaultHttpStream implements FSStream {
     	private InputStream strm;
@@ -249,12 +270,180 @@ public abstract class NaiveUserAgent implements UserAgentCallback, DocumentListe
 		}
 	}
 
+    /**
+     * Starts fetching a resource on <code>executor</code>, so that it is ready, or
+     * on its way, when first requested. The uri is resolved and checked with the
+     * access controllers on the calling thread, so only stream factories are used
+     * from the executor and they must be thread safe.
+     * <br><br>
+     * A prefetched resource is used by the first request for it and then dropped.
+     * If fetching fails, the resource is loaded as usual when requested. Style sheets
+     * are read as text with the stream factory's reader, other types as bytes.
+     */
+    public void prefetch(String uri, ExternalResourceType type, Executor executor) {
+        if (uri == null || uri.isEmpty() || uri.startsWith("data:")) {
+            return;
+        }
+
+        if (!checkAccessAllowed(uri, type, ExternalResourceControlPriority.RUN_BEFORE_RESOLVING_URI)) {
+            return;
+        }
+
+        String resolved = _resolver.resolveURI(this._baseUri, uri);
+        if (resolved == null ||
+            _prefetched.containsKey(resolved) ||
+            !checkAccessAllowed(resolved, type, ExternalResourceControlPriority.RUN_AFTER_RESOLVING_URI)) {
+            return;
+        }
+
+        FutureTask<Object> task = type == ExternalResourceType.CSS ?
+                new FutureTask<>(() -> fetchText(resolved)) :
+                new FutureTask<>(() -> fetch(resolved));
+
+        try {
+            executor.execute(task);
+            _prefetched.put(resolved, task);
+        } catch (RejectedExecutionException e) {
+            // Loaded as usual when requested.
+        }
+    }
+
+    /**
+     * Prefetches the linked style sheets for <code>media</code> and
+     * the images of a document. See {@link #prefetch(String, ExternalResourceType, Executor)}.
+     */
+    public void prefetchDocument(Document doc, NamespaceHandler nsh, String media, Executor executor) {
+        for (StylesheetInfo info : nsh.getStylesheets(doc)) {
+            if (info.getUri() != null && info.appliesToMedia(media)) {
+                prefetch(info.getUri(), ExternalResourceType.CSS, executor);
+            }
+        }
+
+        prefetchImages(doc.getDocumentElement(), nsh, executor);
+    }
+
+    private void prefetchImages(Element e, NamespaceHandler nsh, Executor executor) {
+        if (e == null) {
+            return;
+        }
+
+        if ("img".equalsIgnoreCase(e.getLocalName() != null ? e.getLocalName() : e.getNodeName())) {
+            String src = nsh.getImageSourceURI(e);
+
+            // Checked with the type the replaced element factory loads them as. Linked
+            // SVGs are read as XML documents, and only with an SVG drawer, so are left.
+            if (src != null && src.endsWith(".pdf")) {
+                prefetch(src, ExternalResourceType.PDF, executor);
+            } else if (src != null && !src.endsWith(".svg")) {
+                prefetch(src, ExternalResourceType.IMAGE_RASTER, executor);
+            }
+        }
+
+        for (Node child = e.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                prefetchImages((Element) child, nsh, executor);
+            }
+        }
+    }
+
+    /**
+     * Prefetches the font files of <code>@font-face</code> rules.
+     * See {@link #prefetch(String, ExternalResourceType, Executor)}.
+     */
+    public void prefetchFontFaces(List<FontFaceRule> fontFaces, Executor executor) {
+        for (FontFaceRule rule : fontFaces) {
+            FSDerivedValue src = rule.getCalculatedStyle().valueByName(CSSName.SRC);
+            if (src != IdentValue.NONE) {
+                prefetch(src.asString(), ExternalResourceType.FONT, executor);
+            }
+        }
+    }
+
+    /**
+     * Fetches a resource on a prefetch thread. Failures are not logged here
+     * as the resource is loaded again, on the rendering thread, when requested.
+     */
+    private byte[] fetch(String uri) throws IOException, URISyntaxException {
+        String protocol = extractProtocol(uri);
+
+        InputStream is = hasProtocolFactory(protocol) ?
+                getProtocolFactory(protocol).getUrl(uri).getStream() :
+                new URL(uri).openStream();
+
+        if (is == null) {
+            return null;
+        }
+
+        try (InputStream in = is) {
+            return OpenUtil.readAll(in);
+        }
+    }
+
+    /**
+     * Reads a style sheet on a prefetch thread, through the stream factory's
+     * reader where there is one, as {@link #openReader(String)} does.
+     */
+    private String fetchText(String uri) throws IOException, URISyntaxException {
+        String protocol = extractProtocol(uri);
+
+        Reader reader = hasProtocolFactory(protocol) ?
+                getProtocolFactory(protocol).getUrl(uri).getReader() :
+                new InputStreamReader(new URL(uri).openStream(), StandardCharsets.UTF_8);
+
+        if (reader == null) {
+            return null;
+        }
+
+        try (Reader in = reader) {
+            return OpenUtil.readAll(in);
+        }
+    }
+
+    /**
+     * @return the prefetched content of a resolved uri or null if it was not prefetched as
+     * <code>type</code> or fetching failed.
+     */
+    private <T> T takePrefetched(String uri, Class<T> type) {
+        Future<Object> future = _prefetched.remove(uri);
+
+        if (future == null) {
+            return null;
+        }
+
+        try {
+            Object content = future.get();
+            return type.isInstance(content) ? type.cast(content) : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Cancels prefetches that were not used, so their content is not kept.
+     * Resources can still be loaded as usual afterwards.
+     */
+    @Override
+    public void close() {
+        for (Future<Object> future : _prefetched.values()) {
+            future.cancel(true);
+        }
+        _prefetched.clear();
+    }
+
     /**
      * Gets a InputStream for the resource identified by a resolved URI.
      */
     protected InputStream openStream(String uri) {
         java.io.InputStream is = null;
-        
+
+        byte[] prefetched = takePrefetched(uri, byte[].class);
+        if (prefetched != null) {
+            return new ByteArrayInputStream(prefetched);
+        }
+
         try {
 			String protocol = extractProtocol(uri);
 
@@ -283,7 +472,12 @@ public abstract class NaiveUserAgent implements UserAgentCallback, DocumentListe
      */
     protected Reader openReader(String uri) {
     	InputStream is = null;
-    	
+
+        String prefetched = takePrefetched(uri, String.class);
+        if (prefetched != null) {
+            return new StringReader(prefetched);
+        }
+
         try {
 			String protocol = extractProtocol(uri);
 
@@ -39,7 +39,7 @@ public class DescendantBoxSpliterator implements Spliterator<Box> {
     private boolean hasChildren(Box bx) {
         return
            bx.getChildCount() > 0 ||
-           (bx instanceof BlockBox && !((BlockBox) bx).getInlineContent().isEmpty()) ||
+           (bx instanceof BlockBox && ((BlockBox) bx).getInlineContent() != null && !((BlockBox) bx).getInlineContent().isEmpty()) ||
            (bx instanceof InlineLayoutBox && ((InlineLayoutBox) bx).getInlineChildCount() > 0);
     }
 
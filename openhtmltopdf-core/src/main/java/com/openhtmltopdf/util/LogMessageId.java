@@ -120,6 +120,7 @@ public interface LogMessageId {
         LOAD_URI_RESOLVER_REJECTED_RESOLVING_CSS_IMPORT_AT_URI(XRLog.LOAD, "URI resolver rejected resolving CSS import at ({})"),
         LOAD_URI_RESOLVER_REJECTED_RESOLVING_URI_AT_URI_IN_CSS_STYLESHEET(XRLog.LOAD, "URI resolver rejected resolving URI at ({}) in CSS stylehseet"),
         LOAD_PUTTING_KEY_IN_CACHE(XRLog.LOAD, "Putting key({}) in cache."),
+        LOAD_IGNORING_FONT_CACHE_FILE_FOR_DIFFERENT_FONTS(XRLog.LOAD, "Ignoring font cache file '{}' as it was written for different fonts or by a different version."),
         LOAD_EXCEPTION_MESSAGE(XRLog.LOAD, "{}"),
         LOAD_SAX_FEATURE_NOT_SUPPORTED(XRLog.LOAD, "SAX feature not supported on this XMLReader: {}"),
         LOAD_SAX_FEATURE_NOT_RECOGNIZED(XRLog.LOAD, "SAX feature not recognized on this XMLReader: {}. Feature may be properly named, but not recognized by this parser."),
@@ -162,6 +163,7 @@ public interface LogMessageId {
         EXCEPTION_CANT_READ_IMAGE_FILE_FOR_URI_NOT_FOUND(XRLog.EXCEPTION, "Can't read image file; image at URI '{}' not found"),
         EXCEPTION_COULD_NOT_LOAD_FONT(XRLog.EXCEPTION, "Couldn't load font ({}). Please check that it is a valid truetype font."),
         EXCEPTION_COULD_NOT_CACHE_VALUE_FOR_KEY(XRLog.EXCEPTION, "Could not load cache value for key({})"),
+        EXCEPTION_COULD_NOT_READ_FONT_CACHE_FILE(XRLog.EXCEPTION, "Could not read font cache file '{}', ignoring it."),
         EXCEPTION_UNHANDLED(XRLog.EXCEPTION, "Unhandled exception. {}"),
         EXCEPTION_MALFORMED_URL(XRLog.EXCEPTION, "Bad URL given: {}"),
         EXCEPTION_ITEM_AT_URI_NOT_FOUND(XRLog.EXCEPTION, "Item at URI {} not found"),
@@ -229,6 +231,8 @@ public interface LogMessageId {
         LOAD_COULD_NOT_READ_URI_AT_URL_MAY_BE_RELATIVE(XRLog.LOAD, "Could not read {} as a URL; may be relative. Testing using parent URL {}"),
         LOAD_WAS_ABLE_TO_READ_FROM_URI_USING_PARENT_URL(XRLog.LOAD, "Was able to read from {} using parent URL {}"),
         LOAD_RESOURCE_ACCESS_REJECTED(XRLog.LOAD, "URI {} with type {} was rejected by resource access controller"),
+        LOAD_UNEXPECTED_HTTP_STATUS_FOR_URI(XRLog.LOAD, "Unexpected HTTP status {} for {}"),
+        LOAD_HTTP_RESPONSE_LARGER_THAN_LIMIT(XRLog.LOAD, "Response for {} is larger than the limit of {} bytes, ignoring it."),
 
         GENERAL_FATAL_INFINITE_LOOP_BUG_IN_LINE_BREAKING_ALGO(XRLog.GENERAL, "A fatal infinite loop bug was detected in the line breaking " +
                 "algorithm for break-word! Start-substring=[{}], end={}"),
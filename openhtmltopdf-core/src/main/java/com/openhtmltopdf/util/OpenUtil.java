@@ -6,6 +6,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -146,6 +148,34 @@ public class OpenUtil {
         }
     }
 
+    /**
+     * Returns the SHA-256 hash of the bytes as lower case hex, for use in cache keys.
+     */
+    public static String sha256Hex(byte[] bytes) {
+        byte[] hash;
+
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support SHA-256.
+            throw new RuntimeException(e);
+        }
+
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the SHA-256 hash of the UTF-8 encoding of the text as lower case hex.
+     */
+    public static String sha256Hex(String text) {
+        return sha256Hex(text.getBytes(StandardCharsets.UTF_8));
+    }
+
     @FunctionalInterface
     public interface ThrowableFunction<T, R> {
         R apply(T arg) throws Exception;
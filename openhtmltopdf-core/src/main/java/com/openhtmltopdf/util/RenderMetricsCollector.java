@@ -0,0 +1,89 @@
+package com.openhtmltopdf.util;
+
+import com.openhtmltopdf.extend.RenderMetrics;
+import com.openhtmltopdf.extend.RenderMetrics.Counter;
+import com.openhtmltopdf.extend.RenderMetrics.Stage;
+
+/**
+ * Totals stage times and counters for one render on the rendering thread and
+ * passes them to a {@link RenderMetrics} when the render is finished.
+ * Get the collector for the current render with {@link ThreadCtx#metrics()}:
+ * <pre>
+ * long start = ThreadCtx.metrics().startStage(Stage.LAYOUT);
+ * // ...
+ * ThreadCtx.metrics().endStage(Stage.LAYOUT, start);
+ * </pre>
+ * When no {@link RenderMetrics} is set, a disabled collector is returned
+ * which does nothing, not even reading the clock.
+ */
+public class RenderMetricsCollector {
+    static final RenderMetricsCollector DISABLED = new RenderMetricsCollector(null);
+
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final RenderMetrics _target;
+    private final long[] _stageNanos = new long[Stage.values().length];
+    private final boolean[] _stageSeen = new boolean[Stage.values().length];
+    private final boolean[] _stageActive = new boolean[Stage.values().length];
+    private final long[] _counters = new long[Counter.values().length];
+    private final boolean[] _counterSeen = new boolean[Counter.values().length];
+
+    RenderMetricsCollector(RenderMetrics target) {
+        this._target = target;
+    }
+
+    /**
+     * Whether values are being collected. Use to skip work that is
+     * only done to count something.
+     */
+    public boolean isEnabled() {
+        return _target != null;
+    }
+
+    /**
+     * Starts timing a stage. A stage started again before it ends, for example
+     * by recursion, is only timed by the outermost call.
+     * @return the start time to pass to {@link #endStage(Stage, long)}.
+     */
+    public long startStage(Stage stage) {
+        if (_target == null || _stageActive[stage.ordinal()]) {
+            return NOT_TIMED;
+        }
+
+        _stageActive[stage.ordinal()] = true;
+        return System.nanoTime();
+    }
+
+    public void endStage(Stage stage, long start) {
+        if (start != NOT_TIMED) {
+            _stageNanos[stage.ordinal()] += System.nanoTime() - start;
+            _stageSeen[stage.ordinal()] = true;
+            _stageActive[stage.ordinal()] = false;
+        }
+    }
+
+    public void count(Counter counter, long amount) {
+        if (_target != null) {
+            _counters[counter.ordinal()] += amount;
+            _counterSeen[counter.ordinal()] = true;
+        }
+    }
+
+    void report() {
+        if (_target == null) {
+            return;
+        }
+
+        for (Stage stage : Stage.values()) {
+            if (_stageSeen[stage.ordinal()]) {
+                _target.stageCompleted(stage, _stageNanos[stage.ordinal()]);
+            }
+        }
+
+        for (Counter counter : Counter.values()) {
+            if (_counterSeen[counter.ordinal()]) {
+                _target.counted(counter, _counters[counter.ordinal()]);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.openhtmltopdf.util;
 
+import com.openhtmltopdf.extend.RenderMetrics;
 import com.openhtmltopdf.layout.SharedContext;
 
 import java.io.Closeable;
@@ -14,6 +15,7 @@ public class ThreadCtx {
 
 	private static final ThreadLocal<ThreadData> data = ThreadLocal.withInitial(ThreadData::new);
 	private static final ThreadLocal<Consumer<Diagnostic>> diagnosticConsumer = new ThreadLocal<>();
+	private static final ThreadLocal<RenderMetricsCollector> metricsCollector = new ThreadLocal<>();
 
 
 
@@ -37,6 +39,33 @@ public class ThreadCtx {
 		return diagnosticConsumer::remove;
 	}
 
+	/**
+	 * Starts collecting metrics for a render on this thread. Closing the returned
+	 * object reports the collected values to <code>metrics</code>.
+	 */
+	public static Closeable applyRenderMetrics(RenderMetrics metrics) {
+		if (metrics == null) {
+			metricsCollector.remove();
+			return metricsCollector::remove;
+		}
+
+		RenderMetricsCollector collector = new RenderMetricsCollector(metrics);
+		metricsCollector.set(collector);
+
+		return () -> {
+			metricsCollector.remove();
+			collector.report();
+		};
+	}
+
+	/**
+	 * @return the metrics collector for the render on this thread, never null.
+	 */
+	public static RenderMetricsCollector metrics() {
+		RenderMetricsCollector collector = metricsCollector.get();
+		return collector != null ? collector : RenderMetricsCollector.DISABLED;
+	}
+
 	public static class ThreadData {
 		private ThreadData() { }
 		private SharedContext sharedContext;
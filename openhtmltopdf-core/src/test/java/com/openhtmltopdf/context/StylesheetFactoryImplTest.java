@@ -0,0 +1,79 @@
+package com.openhtmltopdf.context;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.sheet.Ruleset;
+import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.extend.impl.FSBoundedCacheStore;
+import com.openhtmltopdf.layout.SharedContext;
+import com.openhtmltopdf.outputdevice.helper.ExternalResourceType;
+import com.openhtmltopdf.resource.ImageResource;
+import com.openhtmltopdf.swing.NaiveUserAgent;
+
+public class StylesheetFactoryImplTest {
+    private NaiveUserAgent uac;
+    private SharedContext ctx;
+
+    @Before
+    public void setUp() {
+        uac = new NaiveUserAgent() {
+            @Override
+            public ImageResource getImageResource(String uri, ExternalResourceType type) {
+                return null;
+            }
+        };
+
+        ctx = new SharedContext();
+        ctx.setUserAgentCallback(uac);
+        ctx.registerWithThread();
+    }
+
+    @After
+    public void tearDown() {
+        ctx.removeFromThread();
+    }
+
+    @Test
+    public void testStyleDeclarationParsedOnce() {
+        StylesheetFactoryImpl factory = new StylesheetFactoryImpl(uac);
+
+        Ruleset first = factory.parseStyleDeclaration(StylesheetInfo.AUTHOR, "text-align: right; padding: 2px");
+        Ruleset second = factory.parseStyleDeclaration(StylesheetInfo.AUTHOR, "text-align: right; padding: 2px");
+        Ruleset other = factory.parseStyleDeclaration(StylesheetInfo.AUTHOR, "text-align: left");
+
+        assertThat(second, sameInstance(first));
+        assertThat(other, not(sameInstance(first)));
+        assertThat(other.getPropertyDeclarations().get(0).getCSSName(), equalTo(CSSName.TEXT_ALIGN));
+    }
+
+    @Test
+    public void testStyleDeclarationSharedBetweenRenders() {
+        FSBoundedCacheStore cache = new FSBoundedCacheStore(1024 * 1024);
+
+        StylesheetFactoryImpl factory1 = new StylesheetFactoryImpl(uac);
+        factory1.setStylesheetCache(cache);
+        Ruleset first = factory1.parseStyleDeclaration(StylesheetInfo.AUTHOR, "color: red");
+
+        StylesheetFactoryImpl factory2 = new StylesheetFactoryImpl(uac);
+        factory2.setStylesheetCache(cache);
+        Ruleset second = factory2.parseStyleDeclaration(StylesheetInfo.AUTHOR, "color: red");
+
+        assertThat(second, sameInstance(first));
+
+        // Different base uri, so relative urls could resolve differently.
+        uac.setBaseURL("http://example.com/other/");
+        StylesheetFactoryImpl factory3 = new StylesheetFactoryImpl(uac);
+        factory3.setStylesheetCache(cache);
+        Ruleset third = factory3.parseStyleDeclaration(StylesheetInfo.AUTHOR, "color: red");
+
+        assertThat(third, not(sameInstance(first)));
+    }
+}
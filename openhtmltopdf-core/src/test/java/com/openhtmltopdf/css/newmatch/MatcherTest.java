@@ -0,0 +1,170 @@
+package com.openhtmltopdf.css.newmatch;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import com.openhtmltopdf.context.StandardAttributeResolver;
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.constants.IdentValue;
+import com.openhtmltopdf.css.extend.lib.DOMTreeResolver;
+import com.openhtmltopdf.css.parser.CSSParser;
+import com.openhtmltopdf.css.sheet.PropertyDeclaration;
+import com.openhtmltopdf.css.sheet.Stylesheet;
+import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.simple.extend.XhtmlNamespaceHandler;
+
+public class MatcherTest {
+    private static Matcher createMatcher(String css) throws IOException {
+        CSSParser parser = new CSSParser((uri, message) -> {});
+        Stylesheet sheet = parser.parseStylesheet(null, StylesheetInfo.AUTHOR, new StringReader(css));
+
+        return new Matcher(
+                new DOMTreeResolver(),
+                new StandardAttributeResolver(new XhtmlNamespaceHandler(), null, null),
+                null,
+                Collections.singletonList(sheet),
+                "print");
+    }
+
+    private static Document parse(String html) throws Exception {
+        return DocumentBuilderFactory.newInstance()
+                .newDocumentBuilder()
+                .parse(new InputSource(new StringReader(html)));
+    }
+
+    private static String zIndex(Matcher matcher, Element e) {
+        PropertyDeclaration decl = matcher.getCascadedStyle(e, false).propertyByName(CSSName.Z_INDEX);
+        return decl == null ? null : decl.getValue().getCssText();
+    }
+
+    private static List<Element> elements(Element root) {
+        List<Element> result = new ArrayList<>();
+        result.add(root);
+
+        for (org.w3c.dom.Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                result.addAll(elements((Element) child));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Tests that selectors bucketed by id, class and element name still
+     * match, and still cascade in specificity then source order.
+     */
+    @Test
+    public void testIndexedSelectorsMatch() throws Exception {
+        Matcher matcher = createMatcher(
+                "* { z-index: 1; }" +
+                "p { z-index: 2; }" +
+                ".a { z-index: 3; }" +
+                "p.b { z-index: 4; }" +
+                "#c { z-index: 5; }" +
+                "div .d { z-index: 6; }" +
+                "div > span.e { z-index: 7; }" +
+                "[title=f] { z-index: 8; }" +
+                ".g.h { z-index: 9; }" +
+                "span + .i { z-index: 10; }" +
+                ".a { z-index: 11; }");
+
+        Document doc = parse(
+                "<html><body>" +
+                "<p id=\"p\">x</p>" +
+                "<span id=\"a\" class=\"a\">x</span>" +
+                "<p id=\"b\" class=\"b a\">x</p>" +
+                "<p id=\"c\" class=\"b\">x</p>" +
+                "<div><section><em id=\"d\" class=\"x  d\">x</em></section><span id=\"e\" class=\"e\">x</span></div>" +
+                "<section><span id=\"e2\" class=\"e\">x</span></section>" +
+                "<span id=\"f\" title=\"f\">x</span>" +
+                "<span id=\"g\" class=\"h g g\">x</span>" +
+                "<span id=\"h\" class=\"h\">x</span>" +
+                "<em id=\"i\" class=\"i\">x</em>" +
+                "</body></html>");
+
+        String[][] expected = {
+                { "p", "2" },
+                { "a", "11" },
+                { "b", "4" },
+                { "c", "5" },
+                { "d", "6" },
+                { "e", "7" },
+                { "e2", "1" },
+                { "f", "8" },
+                { "g", "9" },
+                { "h", "1" },
+                { "i", "10" },
+        };
+
+        List<Element> all = elements(doc.getDocumentElement());
+
+        for (String[] pair : expected) {
+            Element e = all.stream().filter(el -> pair[0].equals(el.getAttribute("id"))).findFirst().get();
+            assertThat(pair[0], zIndex(matcher, e), equalTo(pair[1]));
+        }
+    }
+
+    @Test
+    public void testNoMatchingRules() throws Exception {
+        Matcher matcher = createMatcher(".a { z-index: 1; } #b { z-index: 2; } p { z-index: 3; }");
+        Document doc = parse("<html><body><div class=\"b\" id=\"a\">x</div></body></html>");
+
+        Element div = (Element) doc.getElementsByTagName("div").item(0);
+        assertThat(zIndex(matcher, div), nullValue());
+    }
+
+    @Test
+    public void testCascadedStyleSharedByElementsWithSameMatches() throws Exception {
+        Matcher matcher = createMatcher("td { z-index: 1; } .x { z-index: 2; }");
+        Document doc = parse(
+                "<html><body><table><tr><td>1</td><td>2</td></tr><tr><td>3</td><td class=\"x\">4</td></tr></table></body></html>");
+
+        List<Element> tds = new ArrayList<>();
+        for (Element e : elements(doc.getDocumentElement())) {
+            if (e.getNodeName().equals("td")) {
+                tds.add(e);
+            }
+        }
+
+        CascadedStyle first = matcher.getCascadedStyle(tds.get(0), false);
+        assertThat(matcher.getCascadedStyle(tds.get(1), false), sameInstance(first));
+        assertThat(matcher.getCascadedStyle(tds.get(2), false), sameInstance(first));
+        assertThat(matcher.getCascadedStyle(tds.get(3), false), not(sameInstance(first)));
+    }
+
+    @Test
+    public void testFingerprintHash() {
+        CascadedStyle a = CascadedStyle.createLayoutStyle(new PropertyDeclaration[] {
+                CascadedStyle.createLayoutPropertyDeclaration(CSSName.DISPLAY, IdentValue.BLOCK),
+                CascadedStyle.createLayoutPropertyDeclaration(CSSName.FLOAT, IdentValue.LEFT) });
+        CascadedStyle b = CascadedStyle.createLayoutStyle(new PropertyDeclaration[] {
+                CascadedStyle.createLayoutPropertyDeclaration(CSSName.FLOAT, IdentValue.LEFT),
+                CascadedStyle.createLayoutPropertyDeclaration(CSSName.DISPLAY, IdentValue.BLOCK) });
+        CascadedStyle c = CascadedStyle.createLayoutStyle(new PropertyDeclaration[] {
+                CascadedStyle.createLayoutPropertyDeclaration(CSSName.DISPLAY, IdentValue.BLOCK),
+                CascadedStyle.createLayoutPropertyDeclaration(CSSName.FLOAT, IdentValue.RIGHT) });
+
+        assertThat(b.getFingerprintHash(), equalTo(a.getFingerprintHash()));
+        assertThat(b.hasSameDeclarations(a), equalTo(true));
+
+        assertThat(c.getFingerprintHash(), not(equalTo(a.getFingerprintHash())));
+        assertThat(c.hasSameDeclarations(a), equalTo(false));
+    }
+}
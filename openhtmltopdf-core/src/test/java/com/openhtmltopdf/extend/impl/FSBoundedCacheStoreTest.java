@@ -0,0 +1,134 @@
+package com.openhtmltopdf.extend.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.openhtmltopdf.extend.FSCacheValue;
+
+public class FSBoundedCacheStoreTest {
+    private static class Value implements FSCacheValue {
+        private final int weight;
+
+        Value(int weight) {
+            this.weight = weight;
+        }
+
+        @Override
+        public int weight() {
+            return weight;
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        FSBoundedCacheStore cache = new FSBoundedCacheStore(100);
+
+        Value a = new Value(40);
+        cache.put("a", a);
+        cache.put("b", new Value(40));
+
+        // Touch a so b is the least recently used.
+        assertThat(cache.get("a"), sameInstance(a));
+
+        cache.put("c", new Value(40));
+
+        assertThat(cache.get("a"), sameInstance(a));
+        assertThat(cache.get("b"), nullValue());
+        assertThat(cache.get("c") != null, is(true));
+        assertThat(cache.getTotalWeight(), is(80L));
+        assertThat(cache.getStats().getEvictionCount(), is(1L));
+    }
+
+    @Test
+    public void testUnknownWeightUsesDefault() {
+        FSBoundedCacheStore cache = new FSBoundedCacheStore(FSBoundedCacheStore.DEFAULT_VALUE_WEIGHT);
+
+        cache.put("a", new Value(-1));
+        cache.put("b", new Value(-1));
+
+        assertThat(cache.size(), is(1));
+        assertThat(cache.get("b") != null, is(true));
+    }
+
+    @Test
+    public void testOverweightValueNotStored() {
+        FSBoundedCacheStore cache = new FSBoundedCacheStore(10);
+
+        cache.put("a", new Value(5));
+        cache.put("b", new Value(11));
+
+        assertThat(cache.get("a") != null, is(true));
+        assertThat(cache.get("b"), nullValue());
+    }
+
+    @Test
+    public void testLoaderStats() {
+        FSBoundedCacheStore cache = new FSBoundedCacheStore(100);
+
+        cache.get("a", () -> new Value(1));
+        cache.get("a", () -> new Value(1));
+        cache.get("b", () -> { throw new IllegalStateException("Expected in test"); });
+
+        FSCacheStats stats = cache.getStats();
+        assertThat(stats.getHitCount(), is(1L));
+        assertThat(stats.getMissCount(), is(2L));
+        assertThat(stats.getLoadCount(), is(2L));
+        assertThat(stats.getLoadFailureCount(), is(1L));
+    }
+
+    @Test
+    public void testSingleFlightLoading() throws Exception {
+        FSBoundedCacheStore cache = new FSBoundedCacheStore(100);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Value loaded = new Value(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<FSCacheValue>> results = new ArrayList<>();
+
+            results.add(executor.submit(() -> cache.get("key", () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+                return loaded;
+            })));
+
+            started.await(10, TimeUnit.SECONDS);
+
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> cache.get("key", () -> {
+                    loads.incrementAndGet();
+                    return new Value(1);
+                })));
+            }
+
+            // Give the other threads a chance to find the in-flight load.
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<FSCacheValue> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS), sameInstance(loaded));
+            }
+
+            assertThat(loads.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
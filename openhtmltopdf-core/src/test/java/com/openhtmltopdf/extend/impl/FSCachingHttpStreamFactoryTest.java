@@ -0,0 +1,199 @@
+package com.openhtmltopdf.extend.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.util.OpenUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class FSCachingHttpStreamFactoryTest {
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String base;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, status == 304 ? -1 : bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            if (status != 304) {
+                os.write(bytes);
+            }
+        }
+    }
+
+    private void serve(String path, String cacheControl, String etag, String body) {
+        server.createContext(path, exchange -> {
+            requests.incrementAndGet();
+
+            if (cacheControl != null) {
+                exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+            }
+
+            if (etag != null) {
+                exchange.getResponseHeaders().set("ETag", etag);
+
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    respond(exchange, 304, "");
+                    return;
+                }
+            }
+
+            respond(exchange, 200, body);
+        });
+    }
+
+    private static String read(FSStream stream) throws IOException {
+        try (InputStream is = stream.getStream()) {
+            return is == null ? null : new String(OpenUtil.readAll(is), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() throws IOException {
+        serve("/fresh", "max-age=3600", null, "fresh");
+        FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory();
+
+        assertThat(read(factory.getUrl(base + "/fresh")), is("fresh"));
+        assertThat(read(factory.getUrl(base + "/fresh")), is("fresh"));
+        assertThat(requests.get(), is(1));
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidatedWithETag() throws IOException {
+        serve("/etag", "no-cache", "\"v1\"", "etag");
+        FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory();
+
+        assertThat(read(factory.getUrl(base + "/etag")), is("etag"));
+        assertThat(read(factory.getUrl(base + "/etag")), is("etag"));
+        assertThat(requests.get(), is(2));
+        assertThat(notModified.get(), is(1));
+    }
+
+    @Test
+    public void testNoStoreIsNotCached() throws IOException {
+        serve("/no-store", "no-store", "\"v1\"", "no-store");
+        FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory();
+
+        assertThat(read(factory.getUrl(base + "/no-store")), is("no-store"));
+        assertThat(read(factory.getUrl(base + "/no-store")), is("no-store"));
+        assertThat(requests.get(), is(2));
+        assertThat(notModified.get(), is(0));
+    }
+
+    @Test
+    public void testNoCacheAfterMaxAgeIsRevalidated() throws IOException {
+        serve("/max-age-no-cache", "max-age=60, no-cache", "\"v1\"", "max-age-no-cache");
+        FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory();
+
+        assertThat(read(factory.getUrl(base + "/max-age-no-cache")), is("max-age-no-cache"));
+        assertThat(read(factory.getUrl(base + "/max-age-no-cache")), is("max-age-no-cache"));
+        assertThat(requests.get(), is(2));
+        assertThat(notModified.get(), is(1));
+    }
+
+    @Test
+    public void testVaryIsNotCached() throws IOException {
+        server.createContext("/vary", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=3600");
+            exchange.getResponseHeaders().set("Vary", "Accept-Language");
+            respond(exchange, 200, "vary");
+        });
+        FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory();
+
+        assertThat(read(factory.getUrl(base + "/vary")), is("vary"));
+        assertThat(read(factory.getUrl(base + "/vary")), is("vary"));
+        assertThat(requests.get(), is(2));
+    }
+
+    @Test
+    public void testResponseOverLimitIsDropped() throws IOException {
+        serve("/large", null, null, "0123456789");
+        FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(
+                new FSBoundedCacheStore(1024), 1000, 1000, 1, 5);
+
+        assertThat(read(factory.getUrl(base + "/large")), nullValue());
+    }
+
+    @Test
+    public void testNotFoundReturnsNullStream() throws IOException {
+        FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory();
+
+        assertThat(read(factory.getUrl(base + "/missing")), nullValue());
+    }
+
+    @Test
+    public void testRequestsPerHostAreLimited() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        server.createContext("/slow", exchange -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            respond(exchange, 200, "slow");
+        });
+
+        FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(
+                new FSBoundedCacheStore(1024), 5000, 5000, 2, 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                String uri = base + "/slow?" + i;
+                results.add(executor.submit(() -> read(factory.getUrl(uri))));
+            }
+
+            for (Future<String> result : results) {
+                assertThat(result.get(), is("slow"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(maxRunning.get() <= 2, is(true));
+    }
+}
@@ -0,0 +1,342 @@
+package com.openhtmltopdf.benchmark;
+
+import com.openhtmltopdf.layout.BoxBuilder;
+import com.openhtmltopdf.layout.LayoutContext;
+import com.openhtmltopdf.layout.SharedContext;
+import com.openhtmltopdf.pdfboxout.PdfBoxFontContext;
+import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.openhtmltopdf.performance.PerformanceCaseGenerator;
+import com.openhtmltopdf.render.BlockBox;
+import com.openhtmltopdf.render.Box;
+import com.openhtmltopdf.render.RenderingContext;
+import com.openhtmltopdf.render.displaylist.DisplayListCollector;
+import com.openhtmltopdf.render.displaylist.DisplayListContainer;
+import com.openhtmltopdf.resource.XMLResource;
+import com.openhtmltopdf.svgsupport.BatikSVGDrawer;
+import com.openhtmltopdf.util.XRLog;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Times each stage of the pipeline on its own, using fixtures built before measurement,
+ * so that a regression can be pinned to parsing, cascade, box building, layout,
+ * display list collection, painting or saving. Each stage is run for every {@link Case}.
+ * <br><br>
+ * To run these benchmarks with allocation rates in the repo root directory:
+ * <pre>
+ * mvn install -DskipTests
+ * java -jar ./openhtmltopdf-examples/target/benchmarks.jar PipelineStageBenchmark -prof gc
+ * </pre>
+ *
+ * A single stage or case can be selected with, for example,
+ * <code>PipelineStageBenchmark.layout -p pipelineCase=TABLE_ROWS</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 2, time = 6, timeUnit = TimeUnit.SECONDS)
+@Fork(warmups = 0, value = 1)
+public class PipelineStageBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(PipelineStageBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    public enum Case {
+        PARAGRAPHS(() -> PerformanceCaseGenerator.paragraphs(100), builder -> {}),
+        TABLE_ROWS(() -> PerformanceCaseGenerator.tableRows(1_000), builder -> {}),
+        // No CJK font is bundled, so this also covers font fallback to the replacement character.
+        CJK(() -> PerformanceCaseGenerator.cjkParagraphs(100), builder -> {}),
+        FLOATS(() -> PerformanceCaseGenerator.floats(100), builder -> {}),
+        SVG(() -> PerformanceCaseGenerator.svgImages(100), builder -> builder.useSVGDrawer(new BatikSVGDrawer())),
+        IMAGES(() -> PerformanceCaseGenerator.images(50), builder -> {}),
+        PDF_UA(() -> PerformanceCaseGenerator.paragraphs(100), builder -> builder.usePdfUaAccessbility(true));
+
+        private final Supplier<String> html;
+        private final Consumer<PdfRendererBuilder> config;
+
+        Case(Supplier<String> html, Consumer<PdfRendererBuilder> config) {
+            this.html = html;
+            this.config = config;
+        }
+    }
+
+    @Param({ "PARAGRAPHS", "TABLE_ROWS", "CJK", "FLOATS", "SVG", "IMAGES", "PDF_UA" })
+    public Case pipelineCase;
+
+    private String html;
+    private Document document;
+    private List<Element> elements;
+
+    /** Styles set up but not laid out, for cascade and box building. */
+    private PdfBoxRenderer styled;
+
+    /** Laid out, for display list collection. */
+    private PdfBoxRenderer laidOut;
+
+    @Setup
+    public void setUp() throws IOException {
+        XRLog.setLoggerImpl(new NoopLogger());
+
+        html = pipelineCase.html.get();
+
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.withHtmlContent(html, null);
+        pipelineCase.config.accept(builder);
+
+        styled = builder.buildPdfRenderer();
+        document = styled.getDocument();
+        elements = new ArrayList<>();
+        collectElements(document.getDocumentElement(), elements);
+
+        laidOut = buildRenderer(this);
+        laidOut.layout();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        close(styled);
+        close(laidOut);
+    }
+
+    /**
+     * A renderer built from the parsed document before each invocation,
+     * for benchmarks that change the renderer.
+     */
+    @State(Scope.Thread)
+    public static class FreshRenderer {
+        PdfBoxRenderer renderer;
+
+        @Setup(Level.Invocation)
+        public void setUp(PipelineStageBenchmark benchmark) {
+            renderer = buildRenderer(benchmark);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            close(renderer);
+        }
+    }
+
+    /**
+     * A renderer laid out before each invocation.
+     */
+    @State(Scope.Thread)
+    public static class LaidOutRenderer {
+        PdfBoxRenderer renderer;
+
+        @Setup(Level.Invocation)
+        public void setUp(PipelineStageBenchmark benchmark) {
+            renderer = buildRenderer(benchmark);
+            renderer.layout();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            close(renderer);
+        }
+    }
+
+    /**
+     * A renderer painted but not saved before each invocation, as saving
+     * subsets fonts and so can only be measured once per document.
+     */
+    @State(Scope.Thread)
+    public static class PaintedRenderer {
+        PdfBoxRenderer renderer;
+
+        @Setup(Level.Invocation)
+        public void setUp(PipelineStageBenchmark benchmark) throws IOException {
+            renderer = buildRenderer(benchmark);
+            renderer.layout();
+            renderer.createPDFWithoutClosing();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            close(renderer);
+        }
+    }
+
+    private static PdfBoxRenderer buildRenderer(PipelineStageBenchmark benchmark) {
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.withW3cDocument(benchmark.document, null);
+        benchmark.pipelineCase.config.accept(builder);
+
+        return builder.buildPdfRenderer();
+    }
+
+    /**
+     * Closing the renderer does not close the document the builder created for it,
+     * so close that too rather than leave it for the garbage collector.
+     */
+    private static void close(PdfBoxRenderer renderer) throws IOException {
+        renderer.getPdfDocument().close();
+        renderer.close();
+    }
+
+    private static Document parse(String html) {
+        return XMLResource.load(new StringReader(html)).getDocument();
+    }
+
+    private static void collectElements(Element element, List<Element> elements) {
+        elements.add(element);
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                collectElements((Element) child, elements);
+            }
+        }
+    }
+
+    @Benchmark
+    public Document parse() {
+        // The parser reads its settings from the renderer registered with the thread.
+        styled.getSharedContext().registerWithThread();
+        return parse(html);
+    }
+
+    /**
+     * Parses the document's style sheets and sets up the selector matcher, as
+     * done when the renderer is built.
+     */
+    @Benchmark
+    public PdfBoxRenderer styleSetup() throws IOException {
+        PdfBoxRenderer renderer = buildRenderer(this);
+        close(renderer);
+        return renderer;
+    }
+
+    /**
+     * Matches every element against the style sheets.
+     */
+    @Benchmark
+    public void cascade(Blackhole bh) {
+        SharedContext shared = styled.getSharedContext();
+        shared.registerWithThread();
+
+        for (Element element : elements) {
+            bh.consume(shared.getCss().getCascadedStyle(element, true));
+        }
+    }
+
+    /**
+     * Builds the block box tree and inline content without laying it out. Calculated
+     * styles are cached by the renderer so after the first invocation this excludes
+     * style derivation.
+     */
+    @Benchmark
+    public BlockBox boxBuild() {
+        styled.getSharedContext().registerWithThread();
+
+        LayoutContext c = styled.getSharedContext().newLayoutContextInstance();
+        c.setFontContext(new PdfBoxFontContext());
+
+        BlockBox root = BoxBuilder.createRootBox(c, document);
+        buildChildren(c, root);
+
+        return root;
+    }
+
+    private static void buildChildren(LayoutContext c, BlockBox block) {
+        // Layout normally creates children lazily as it reaches each block.
+        block.ensureChildren(c);
+
+        if (block.getChildrenContentType() == BlockBox.ContentType.BLOCK) {
+            for (Box child : block.getChildren()) {
+                buildChildren(c, (BlockBox) child);
+            }
+        }
+    }
+
+    /**
+     * Box building, layout and pagination.
+     */
+    @Benchmark
+    public void layout(FreshRenderer fresh) {
+        fresh.renderer.layout();
+    }
+
+    @Benchmark
+    public DisplayListContainer displayList() {
+        laidOut.getSharedContext().registerWithThread();
+
+        BlockBox root = laidOut.getRootBox();
+
+        RenderingContext c = laidOut.getSharedContext().newRenderingContextInstance();
+        c.setFontContext(new PdfBoxFontContext());
+        c.setOutputDevice(laidOut.getOutputDevice());
+        c.setRootLayer(root.getLayer());
+
+        return new DisplayListCollector(root.getLayer().getPages()).collectRoot(c, root.getLayer());
+    }
+
+    /**
+     * Display list collection, painting and finishing of links, bookmarks and
+     * the PDF/UA structure tree.
+     */
+    @Benchmark
+    public void paint(LaidOutRenderer laidOutRenderer) throws IOException {
+        laidOutRenderer.renderer.createPDFWithoutClosing();
+    }
+
+    /**
+     * Font subsetting, compression and writing of a painted document.
+     */
+    @Benchmark
+    public void save(PaintedRenderer paintedRenderer) throws IOException {
+        paintedRenderer.renderer.getSharedContext().registerWithThread();
+
+        PDDocument doc = paintedRenderer.renderer.getPdfDocument();
+        doc.save(new DiscardingOutputStream());
+    }
+
+    /**
+     * So saving does not also measure growing an in-memory buffer.
+     */
+    private static class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
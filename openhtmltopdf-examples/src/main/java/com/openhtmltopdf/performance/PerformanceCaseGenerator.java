@@ -81,4 +81,63 @@ public class PerformanceCaseGenerator {
         return join(hdr, div, ftr, howMany);
     }
 
+    /**
+     * Text without spaces in a script the built-in fonts do not cover, so each
+     * character goes through line breaking and font fallback.
+     */
+    public static String cjkParagraphs(int howMany) {
+        final String hdr = "<html><head><style>p { font-family: sans-serif; }</style></head><body>";
+        final String paragraph = "<p>" +
+                "\u5929\u5730\u7384\u9ec4\uff0c\u5b87\u5b99\u6d2a\u8352\u3002\u65e5\u6708\u76c8\u6603\uff0c\u8fb0\u5bbf\u5217\u5f20\u3002" +
+                "\u5bd2\u6765\u6691\u5f80\uff0c\u79cb\u6536\u51ac\u85cf\u3002\u95f0\u4f59\u6210\u5c81\uff0c\u5f8b\u5415\u8c03\u9633\u3002" +
+                "\u3053\u308c\u306f\u65e5\u672c\u8a9e\u306e\u6587\u7ae0\u3067\u3059\u3002\ud55c\uad6d\uc5b4 \ubb38\uc7a5\uc785\ub2c8\ub2e4." +
+                "</p>";
+        final String ftr = "</body></html>";
+
+        return join(hdr, paragraph, ftr, howMany);
+    }
+
+    /**
+     * Performance of float placement, with text flowing around left and right floats.
+     */
+    public static String floats(int howMany) {
+        final String hdr = "<html><head><style>" +
+                ".left { float: left; width: 80px; height: 60px; margin: 4px; background-color: orange; }" +
+                ".right { float: right; width: 120px; height: 30px; margin: 4px; background-color: teal; }" +
+                "</style></head><body>";
+        final String block = "<div><div class=\"left\"></div><div class=\"right\"></div><p>" + LOREM + "</p></div>";
+        final String ftr = "</body></html>";
+
+        return join(hdr, block, ftr, howMany);
+    }
+
+    /**
+     * Inline SVG, needs a SVG drawer to be set on the builder.
+     */
+    public static String svgImages(int howMany) {
+        final String hdr = "<html><body>";
+        final String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"200\" height=\"100\">" +
+                "<rect x=\"10\" y=\"10\" width=\"180\" height=\"80\" rx=\"10\" fill=\"orange\" stroke=\"black\"/>" +
+                "<circle cx=\"100\" cy=\"50\" r=\"30\" fill=\"teal\"/>" +
+                "<text x=\"20\" y=\"55\" font-size=\"14\">SVG</text>" +
+                "</svg>";
+        final String ftr = "</body></html>";
+
+        return join(hdr, svg, ftr, howMany);
+    }
+
+    /**
+     * The same PNG and JPEG images repeated, loaded from the class path.
+     */
+    public static String images(int howMany) {
+        final String png = PerformanceCaseGenerator.class.getResource("/demos/images/flyingsaucer.png").toExternalForm();
+        final String jpg = PerformanceCaseGenerator.class.getResource("/demos/splash/images/flyingsaucer.jpg").toExternalForm();
+
+        final String hdr = "<html><head><style>img { width: 160px; }</style></head><body>";
+        final String imgs = "<div><img src=\"" + png + "\" /><img src=\"" + jpg + "\" /></div>";
+        final String ftr = "</body></html>";
+
+        return join(hdr, imgs, ftr, howMany);
+    }
+
 }
@@ -1,23 +1,38 @@
 package com.openhtmltopdf.nonvisualregressiontests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.hasItems;
 
 import java.awt.Color;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -26,12 +41,16 @@ import org.apache.commons.io.FileUtils;
 import org.apache.pdfbox.cos.COSDocument;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
+import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationFileAttachment;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
@@ -48,11 +67,21 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.SVGDrawer;
+import com.openhtmltopdf.extend.RenderMetrics;
+import com.openhtmltopdf.extend.impl.FSBoundedCacheStore;
 import com.openhtmltopdf.layout.Layer;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceControlPriority;
+import com.openhtmltopdf.outputdevice.helper.ExternalResourceType;
+import com.openhtmltopdf.render.Box;
 import com.openhtmltopdf.pdfboxout.PagePosition;
+import com.openhtmltopdf.pdfboxout.PdfBoxPersistentFontCache;
 import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
+import com.openhtmltopdf.pdfboxout.PdfRenderEngine;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.openhtmltopdf.svgsupport.BatikSVGDrawer;
 import com.openhtmltopdf.testcases.TestcaseRunner;
 import com.openhtmltopdf.testlistener.PrintingRunner;
 import com.openhtmltopdf.util.Diagnostic;
@@ -928,6 +957,720 @@ public class NonVisualRegressionTest {
         assertEquals(111.48, lastContentLine, 0.5);
     }
 
+    /**
+     * Tests that a render engine can be shared by multiple renders and that
+     * its fonts are only read once.
+     */
+    @Test
+    public void testRenderEngineSharedFonts() throws IOException {
+        AtomicInteger fontReads = new AtomicInteger();
+
+        PdfRenderEngine engine = new PdfRendererBuilder()
+            .useFont(() -> {
+                fontReads.incrementAndGet();
+                return VisualRegressionTest.class.getClassLoader().getResourceAsStream("org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf");
+            }, "Liberation Sans")
+            .buildRenderEngine();
+
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+            engine.newBuilder()
+                .withHtmlContent("<html><body style=\"font-family: 'Liberation Sans';\">Render " + i + "</body></html>", null)
+                .toStream(os)
+                .run();
+
+            try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+                assertEquals("Render " + i, new PDFTextStripper().getText(doc).trim());
+                assertThat(doc.getPage(0).getResources().getFont(COSName.getPDFName("F1")).getName(),
+                        new CustomTypeSafeMatcher<String>("subset of LiberationSans") {
+                            @Override
+                            protected boolean matchesSafely(String name) {
+                                return name.endsWith("+LiberationSans");
+                            }
+                        });
+            }
+        }
+
+        assertEquals(1, fontReads.get());
+    }
+
+    /**
+     * Tests that fallback font coverage is cached so that a font known not to contain
+     * the text is not loaded again by later renders sharing the metrics cache.
+     */
+    @Test
+    public void testGlyphCoverageCachedAcrossRenders() throws IOException {
+        FSBoundedCacheStore metricsCache = new FSBoundedCacheStore(1024 * 1024);
+        AtomicInteger arabicReads = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+            new PdfRendererBuilder()
+                .useCacheStore(PdfRendererBuilder.CacheStore.PDF_FONT_METRICS, metricsCache)
+                .useFont(() -> {
+                    arabicReads.incrementAndGet();
+                    return VisualRegressionTest.class.getClassLoader().getResourceAsStream("visualtest/html/fonts/NotoNaskhArabic-Regular.ttf");
+                }, "Arabic")
+                .useFont(() -> VisualRegressionTest.class.getClassLoader().getResourceAsStream("org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf"),
+                 "Liberation Sans")
+                .withHtmlContent("<html><body style=\"font-family: 'Arabic', 'Liberation Sans';\">Hello</body></html>", null)
+                .toStream(os)
+                .run();
+
+            try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+                assertEquals("Hello", new PDFTextStripper().getText(doc).trim());
+            }
+        }
+
+        assertEquals(1, arabicReads.get());
+    }
+
+    private static void renderWithLiberationSans(String text, FSBoundedCacheStore metricsCache) throws IOException {
+        new PdfRendererBuilder()
+            .useCacheStore(PdfRendererBuilder.CacheStore.PDF_FONT_METRICS, metricsCache)
+            .useFont(() -> VisualRegressionTest.class.getClassLoader().getResourceAsStream("org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf"),
+             "Liberation Sans")
+            .withHtmlContent("<html><body style=\"font-family: 'Liberation Sans';\">" + text + "</body></html>", null)
+            .toStream(new ByteArrayOutputStream())
+            .run();
+    }
+
+    /**
+     * Tests that the metrics cache weighs shared glyph advance and coverage tables
+     * again when a later render adds a page of code points to them.
+     */
+    @Test
+    public void testFontTablesReweighedWhenGrown() throws IOException {
+        FSBoundedCacheStore metricsCache = new FSBoundedCacheStore(1024 * 1024);
+
+        renderWithLiberationSans("Hello", metricsCache);
+        FSCacheValue advances = metricsCache.get("font-advances:Liberation Sans:400:normal");
+        FSCacheValue coverage = metricsCache.get("font-coverage:Liberation Sans:400:normal");
+        int advancesWeight = advances.weight();
+        int coverageWeight = coverage.weight();
+        long totalWeight = metricsCache.getTotalWeight();
+
+        // Greek is on a different page of advances to Latin and
+        // CJK (not in the font) on a different page of coverage.
+        renderWithLiberationSans("\u03A9\u03BC\u03AD\u03B3\u03B1 \u4E2D", metricsCache);
+        assertTrue(advances.weight() > advancesWeight);
+        assertTrue(coverage.weight() > coverageWeight);
+        assertEquals(
+            totalWeight + advances.weight() - advancesWeight + coverage.weight() - coverageWeight,
+            metricsCache.getTotalWeight());
+    }
+
+    /**
+     * Tests that font metrics, coverage and advances saved by one cache let a new cache
+     * (as in a restarted JVM) lay out text without loading a fallback font it does not use.
+     */
+    @Test
+    public void testPersistentFontCache() throws IOException {
+        File cacheFile = File.createTempFile("font-metrics", ".cache");
+        cacheFile.deleteOnExit();
+        cacheFile.delete();
+
+        AtomicInteger arabicReads = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            PdfBoxPersistentFontCache cache = new PdfBoxPersistentFontCache(cacheFile, "test-fonts-v1");
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+            new PdfRendererBuilder()
+                .useCacheStore(PdfRendererBuilder.CacheStore.PDF_FONT_METRICS, cache)
+                .useFont(() -> {
+                    arabicReads.incrementAndGet();
+                    return VisualRegressionTest.class.getClassLoader().getResourceAsStream("visualtest/html/fonts/NotoNaskhArabic-Regular.ttf");
+                }, "Arabic")
+                .useFont(() -> VisualRegressionTest.class.getClassLoader().getResourceAsStream("org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf"),
+                 "Liberation Sans")
+                .withHtmlContent("<html><body style=\"font-family: 'Arabic', 'Liberation Sans';\">Hello</body></html>", null)
+                .toStream(os)
+                .run();
+
+            cache.save();
+
+            try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+                assertEquals("Hello", new PDFTextStripper().getText(doc).trim());
+            }
+        }
+
+        assertEquals(1, arabicReads.get());
+        assertThat(new PdfBoxPersistentFontCache(cacheFile, "test-fonts-v2").size(), equalTo(0));
+
+        // A corrupt fingerprint length must be ignored rather than allocated.
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(cacheFile))) {
+            out.writeInt(0x4F54_4643);
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+        assertThat(new PdfBoxPersistentFontCache(cacheFile, "test-fonts-v1").size(), equalTo(0));
+        cacheFile.delete();
+    }
+
+    /**
+     * Tests that page content compressed on an executor is written back to the right pages.
+     */
+    @Test
+    public void testContentStreamCompressionExecutor() throws IOException {
+        String html = IntStream.range(0, 20)
+                .mapToObj(i -> "<div style=\"page-break-after: always;\">Page " + i + "</div>")
+                .collect(Collectors.joining("", "<html><body>", "<div>Last</div></body></html>"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try {
+            new PdfRendererBuilder()
+                .withHtmlContent(html, null)
+                .useContentStreamCompressionExecutor(executor)
+                .toStream(os)
+                .run();
+        } finally {
+            executor.shutdown();
+        }
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            assertEquals(21, doc.getNumberOfPages());
+
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int i = 0; i < 20; i++) {
+                stripper.setStartPage(i + 1);
+                stripper.setEndPage(i + 1);
+                assertEquals("Page " + i, stripper.getText(doc).trim());
+
+                COSStream contents = (COSStream) doc.getPage(i).getCOSObject().getDictionaryObject(COSName.CONTENTS);
+                assertEquals(COSName.FLATE_DECODE, contents.getItem(COSName.FILTER));
+            }
+        }
+    }
+
+    /**
+     * Tests rendering with document streams held in a temporary file rather than on the heap.
+     */
+    @Test
+    public void testMemoryUsageSettingTempFile() throws IOException {
+        String html = IntStream.range(0, 5)
+                .mapToObj(i -> "<div style=\"page-break-after: always;\">Page " + i + "</div>")
+                .collect(Collectors.joining("", "<html><body>", "<div>Last</div></body></html>"));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        new PdfRendererBuilder()
+            .withHtmlContent(html, null)
+            .useMemoryUsageSetting(MemoryUsageSetting.setupTempFileOnly())
+            .toStream(os)
+            .run();
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            assertEquals(6, doc.getNumberOfPages());
+
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setStartPage(6);
+            stripper.setEndPage(6);
+            assertEquals("Last", stripper.getText(doc).trim());
+        }
+    }
+
+    /**
+     * Tests that stage times and counters are reported once, when the render finishes.
+     */
+    @Test
+    public void testRenderMetrics() throws IOException {
+        String html =
+            "<html><head><style>p { color: red; }</style></head><body>" +
+            "<p style=\"page-break-after: always;\">One</p><p>Two <img src=\"data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==\" /></p></body></html>";
+
+        Map<RenderMetrics.Stage, Long> stages = new EnumMap<>(RenderMetrics.Stage.class);
+        Map<RenderMetrics.Counter, Long> counters = new EnumMap<>(RenderMetrics.Counter.class);
+
+        RenderMetrics metrics = new RenderMetrics() {
+            @Override
+            public void stageCompleted(Stage stage, long nanos) {
+                assertNull(stages.put(stage, nanos));
+            }
+
+            @Override
+            public void counted(Counter counter, long value) {
+                assertNull(counters.put(counter, value));
+            }
+        };
+
+        try (PdfBoxRenderer renderer = new PdfRendererBuilder()
+                .withHtmlContent(html, null)
+                .useRenderMetrics(metrics)
+                .toStream(new ByteArrayOutputStream())
+                .buildPdfRenderer()) {
+            renderer.layout();
+            renderer.createPDF();
+
+            assertTrue(stages.isEmpty());
+        }
+
+        assertThat(stages.keySet(), hasItems(
+            RenderMetrics.Stage.DOCUMENT_LOAD, RenderMetrics.Stage.CSS_PARSE, RenderMetrics.Stage.CASCADE,
+            RenderMetrics.Stage.BOX_BUILD, RenderMetrics.Stage.LAYOUT, RenderMetrics.Stage.DISPLAY_LIST,
+            RenderMetrics.Stage.PAINT, RenderMetrics.Stage.SAVE));
+        assertTrue(stages.get(RenderMetrics.Stage.LAYOUT) > 0);
+
+        assertEquals(Long.valueOf(2), counters.get(RenderMetrics.Counter.PAGES));
+        assertEquals(Long.valueOf(2), counters.get(RenderMetrics.Counter.TEXT_RUNS));
+        assertTrue(counters.get(RenderMetrics.Counter.BOXES) > 2);
+    }
+
+    private static String renderWithStylesheetCache(String css, FSBoundedCacheStore cache, Map<RenderMetrics.Stage, Long> stages) throws IOException {
+        String html =
+            "<html><head><style>" + css + "</style></head><body>" +
+            "<p>One</p><div>Two</div></body></html>";
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        new PdfRendererBuilder()
+            .withHtmlContent(html, null)
+            .useCacheStore(PdfRendererBuilder.CacheStore.CSS_STYLESHEETS, cache)
+            .useRenderMetrics(new RenderMetrics() {
+                @Override
+                public void stageCompleted(Stage stage, long nanos) {
+                    stages.put(stage, nanos);
+                }
+
+                @Override
+                public void counted(Counter counter, long value) {
+                }
+            })
+            .toStream(os)
+            .run();
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            return new PDFTextStripper().getText(doc).trim();
+        }
+    }
+
+    /**
+     * Tests that a parsed style sheet is reused by a later render and that
+     * a changed style sheet is parsed again.
+     */
+    @Test
+    public void testStylesheetCache() throws IOException {
+        FSBoundedCacheStore cache = new FSBoundedCacheStore(1024 * 1024);
+
+        Map<RenderMetrics.Stage, Long> first = new EnumMap<>(RenderMetrics.Stage.class);
+        assertEquals("Two", renderWithStylesheetCache("p { display: none; }", cache, first));
+        assertTrue(first.containsKey(RenderMetrics.Stage.CSS_PARSE));
+        assertEquals(1, cache.size());
+
+        Map<RenderMetrics.Stage, Long> second = new EnumMap<>(RenderMetrics.Stage.class);
+        assertEquals("Two", renderWithStylesheetCache("p { display: none; }", cache, second));
+        assertFalse(second.containsKey(RenderMetrics.Stage.CSS_PARSE));
+
+        Map<RenderMetrics.Stage, Long> changed = new EnumMap<>(RenderMetrics.Stage.class);
+        assertEquals("One", renderWithStylesheetCache("div { display: none; }", cache, changed));
+        assertTrue(changed.containsKey(RenderMetrics.Stage.CSS_PARSE));
+        assertEquals(2, cache.size());
+    }
+
+    private static int[] renderSampledTable(String sampleRows) throws IOException {
+        String html = IntStream.range(0, 20)
+                .mapToObj(i -> "<tr><td id=\"a" + i + "\">" + (i == 15 ? "A_very_long_unbreakable_word" : "A") + "</td><td id=\"b" + i + "\">B</td></tr>")
+                .collect(Collectors.joining("",
+                    "<html><head><style>table { -fs-table-layout-sample-rows: " + sampleRows + "; }</style></head><body><table>" +
+                    "<thead><tr><td>Head</td><td>Head</td></tr></thead><tbody>",
+                    "</tbody></table></body></html>"));
+
+        PdfRendererBuilder builder = new PdfRendererBuilder()
+            .withHtmlContent(html, null)
+            .toStream(new ByteArrayOutputStream());
+
+        try (PdfBoxRenderer renderer = builder.buildPdfRenderer()) {
+            renderer.layout();
+
+            Box first = renderer.getSharedContext().getBoxById("a0");
+            Box last = renderer.getSharedContext().getBoxById("a19");
+            return new int[] { first.getWidth(), last.getWidth() };
+        }
+    }
+
+    /**
+     * Tests that with -fs-table-layout-sample-rows column widths are decided
+     * by the header and first body rows only, and apply to every row.
+     */
+    @Test
+    public void testTableLayoutSampleRows() throws IOException {
+        int[] all = renderSampledTable("0");
+        int[] sampled = renderSampledTable("10");
+        int[] sampledIncludingWideRow = renderSampledTable("16");
+
+        assertEquals(all[0], all[1]);
+        assertEquals(sampled[0], sampled[1]);
+        assertTrue(sampled[0] < all[0]);
+        assertEquals(all[0], sampledIncludingWideRow[0]);
+    }
+
+    private static byte[] renderImages(FSBoundedCacheStore cache, Map<RenderMetrics.Counter, Long> counters) throws IOException {
+        String html =
+            "<html><body>" +
+            "<img src=\"images/landscape-sydney.jpg\" style=\"width: 100px;\" />" +
+            "<img src=\"back.png\" />" +
+            "</body></html>";
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        PdfRendererBuilder builder = new PdfRendererBuilder()
+            .withHtmlContent(html, NonVisualRegressionTest.class.getResource("/demos/").toString())
+            .useRenderMetrics(new RenderMetrics() {
+                @Override
+                public void stageCompleted(Stage stage, long nanos) {
+                }
+
+                @Override
+                public void counted(Counter counter, long value) {
+                    counters.put(counter, value);
+                }
+            })
+            .toStream(os);
+
+        if (cache != null) {
+            builder.useCacheStore(PdfRendererBuilder.CacheStore.PDF_IMAGES, cache);
+        }
+
+        builder.run();
+        return os.toByteArray();
+    }
+
+    private static List<String> describeImages(byte[] pdf) throws IOException {
+        List<String> images = new ArrayList<>();
+
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            PDResources resources = doc.getPage(0).getResources();
+
+            for (COSName name : resources.getXObjectNames()) {
+                PDImageXObject image = (PDImageXObject) resources.getXObject(name);
+
+                try (InputStream raw = image.getCOSObject().createRawInputStream()) {
+                    images.add(image.getWidth() + "x" + image.getHeight() + ":" +
+                               image.getCOSObject().getFilters() + ":" +
+                               image.getColorSpace().getName() + ":" +
+                               (image.getSoftMask() != null) + ":" +
+                               Arrays.hashCode(IOUtils.toByteArray(raw)));
+                }
+            }
+        }
+
+        images.sort(null);
+        return images;
+    }
+
+    /**
+     * Tests that images are shared between renders in the image cache and
+     * embed the same as images decoded for the document.
+     */
+    @Test
+    public void testImageCache() throws IOException {
+        FSBoundedCacheStore cache = new FSBoundedCacheStore(16 * 1024 * 1024);
+
+        List<String> expected = describeImages(renderImages(null, new EnumMap<>(RenderMetrics.Counter.class)));
+        assertEquals(2, expected.size());
+        assertTrue(expected.stream().anyMatch(image -> image.contains("DCTDecode")));
+
+        Map<RenderMetrics.Counter, Long> first = new EnumMap<>(RenderMetrics.Counter.class);
+        assertEquals(expected, describeImages(renderImages(cache, first)));
+        assertEquals(2, cache.size());
+        assertNull(first.get(RenderMetrics.Counter.CACHE_HITS));
+
+        Map<RenderMetrics.Counter, Long> second = new EnumMap<>(RenderMetrics.Counter.class);
+        assertEquals(expected, describeImages(renderImages(cache, second)));
+        assertEquals(Long.valueOf(2), second.get(RenderMetrics.Counter.CACHE_HITS));
+    }
+
+    private static int renderNonInterpolatedImages(int pages, Map<RenderMetrics.Counter, Long> counters) throws IOException {
+        String html = IntStream.range(0, pages)
+                .mapToObj(i -> "<p style=\"page-break-after: always;\">" +
+                               "<img src=\"images/landscape-sydney.jpg\" style=\"width: 20px; image-rendering: pixelated;\" />" +
+                               "<img src=\"back.png\" style=\"image-rendering: pixelated;\" /></p>")
+                .collect(Collectors.joining("", "<html><body>", "</body></html>"));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        new PdfRendererBuilder()
+            .withHtmlContent(html, NonVisualRegressionTest.class.getResource("/demos/").toString())
+            .useRenderMetrics(new RenderMetrics() {
+                @Override
+                public void stageCompleted(Stage stage, long nanos) {
+                }
+
+                @Override
+                public void counted(Counter counter, long value) {
+                    counters.put(counter, value);
+                }
+            })
+            .toStream(os)
+            .run();
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            PDResources resources = doc.getPage(pages - 1).getResources();
+            for (COSName name : resources.getXObjectNames()) {
+                PDImageXObject image = (PDImageXObject) resources.getXObject(name);
+                assertFalse(image.getInterpolate());
+                assertTrue(image.getImage().getWidth() > 0);
+            }
+
+            return (int) doc.getDocument().getObjectsByType(COSName.XOBJECT).stream()
+                    .filter(obj -> COSName.IMAGE.equals(((COSStream) obj.getObject()).getCOSName(COSName.SUBTYPE)))
+                    .count();
+        }
+    }
+
+    /**
+     * Tests that an image drawn without interpolation on many pages is embedded once
+     * and that the copy keeps the filter of the original, such as DCTDecode for JPEG.
+     */
+    @Test
+    public void testNonInterpolatedImageEmbeddedOnce() throws IOException {
+        Map<RenderMetrics.Counter, Long> onePage = new EnumMap<>(RenderMetrics.Counter.class);
+        Map<RenderMetrics.Counter, Long> fourPages = new EnumMap<>(RenderMetrics.Counter.class);
+
+        int expected = renderNonInterpolatedImages(1, onePage);
+        assertEquals(expected, renderNonInterpolatedImages(4, fourPages));
+
+        assertNull(onePage.get(RenderMetrics.Counter.IMAGE_BYTES_DEDUPLICATED));
+        assertTrue(fourPages.get(RenderMetrics.Counter.IMAGE_BYTES_DEDUPLICATED) > 0);
+    }
+
+    private static int renderRunningHeaderSvg(int pages, Map<RenderMetrics.Counter, Long> counters) throws IOException {
+        String html = IntStream.range(0, pages)
+                .mapToObj(i -> "<p style=\"page-break-before: " + (i == 0 ? "auto" : "always") + ";\">Page</p>")
+                .collect(Collectors.joining("",
+                        "<html><head><style>" +
+                        "@page { @top-center { content: element(header); } }" +
+                        "#header { position: running(header); }" +
+                        "circle { fill: red; }" +
+                        "</style></head><body>" +
+                        "<div id=\"header\"><svg xmlns=\"http://www.w3.org/2000/svg\" width=\"20\" height=\"20\">" +
+                        "<circle cx=\"10\" cy=\"10\" r=\"8\" /></svg></div>",
+                        "</body></html>"));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try (SVGDrawer svg = new BatikSVGDrawer()) {
+            new PdfRendererBuilder()
+                .withHtmlContent(html, null)
+                .useSVGDrawer(svg)
+                .useRenderMetrics(new RenderMetrics() {
+                    @Override
+                    public void stageCompleted(Stage stage, long nanos) {
+                    }
+
+                    @Override
+                    public void counted(Counter counter, long value) {
+                        counters.put(counter, value);
+                    }
+                })
+                .toStream(os)
+                .run();
+        }
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            assertEquals(pages, doc.getNumberOfPages());
+
+            return (int) doc.getDocument().getObjectsByType(COSName.XOBJECT).stream()
+                    .filter(obj -> COSName.FORM.equals(((COSStream) obj.getObject()).getCOSName(COSName.SUBTYPE)))
+                    .count();
+        }
+    }
+
+    /**
+     * Tests that an SVG in a running header is transcoded once and the
+     * resulting form placed on every page.
+     */
+    @Test
+    public void testRunningHeaderSvgDrawnOnce() throws IOException {
+        Map<RenderMetrics.Counter, Long> onePage = new EnumMap<>(RenderMetrics.Counter.class);
+        Map<RenderMetrics.Counter, Long> fourPages = new EnumMap<>(RenderMetrics.Counter.class);
+
+        int expected = renderRunningHeaderSvg(1, onePage);
+        assertTrue(expected > 0);
+        assertEquals(expected, renderRunningHeaderSvg(4, fourPages));
+
+        assertNull(onePage.get(RenderMetrics.Counter.GRAPHICS_REUSED));
+        // Three for the SVG form and three for the margin area form around it.
+        assertEquals(Long.valueOf(6), fourPages.get(RenderMetrics.Counter.GRAPHICS_REUSED));
+    }
+
+    /**
+     * Tests that SVGs whose attribute values contain quotes are not
+     * mistaken for SVGs with more attributes and drawn from the same form.
+     */
+    @Test
+    public void testSvgWithQuotedAttributeValuesDrawnSeparately() throws IOException {
+        String html =
+            "<html><body>" +
+            "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"20\" height=\"20\">" +
+            "<rect class='a\" fill=\"blue' width=\"10\" height=\"10\" /></svg>" +
+            "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"20\" height=\"20\">" +
+            "<rect class=\"a\" fill=\"blue\" width=\"10\" height=\"10\" /></svg>" +
+            "</body></html>";
+
+        Map<RenderMetrics.Counter, Long> counters = new EnumMap<>(RenderMetrics.Counter.class);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try (SVGDrawer svg = new BatikSVGDrawer()) {
+            new PdfRendererBuilder()
+                .withHtmlContent(html, null)
+                .useSVGDrawer(svg)
+                .useRenderMetrics(new RenderMetrics() {
+                    @Override
+                    public void stageCompleted(Stage stage, long nanos) {
+                    }
+
+                    @Override
+                    public void counted(Counter counter, long value) {
+                        counters.put(counter, value);
+                    }
+                })
+                .toStream(os)
+                .run();
+        }
+
+        assertNull(counters.get(RenderMetrics.Counter.GRAPHICS_REUSED));
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            long forms = doc.getDocument().getObjectsByType(COSName.XOBJECT).stream()
+                    .filter(obj -> COSName.FORM.equals(((COSStream) obj.getObject()).getCOSName(COSName.SUBTYPE)))
+                    .count();
+            assertEquals(2, forms);
+        }
+    }
+
+    /**
+     * Tests that page margin areas are output once as forms, with
+     * the page counters drawn on each page.
+     */
+    @Test
+    public void testPageMarginAreasOutputOnce() throws IOException {
+        String html = IntStream.range(0, 4)
+                .mapToObj(i -> "<p style=\"page-break-before: " + (i == 0 ? "auto" : "always") + ";\">Body</p>")
+                .collect(Collectors.joining("",
+                        "<html><head><style>" +
+                        "@page { size: 300px 200px; margin: 50px;" +
+                        "  @top-center { content: 'Static header'; }" +
+                        "  @bottom-center { content: 'Page ' counter(page) ' of ' counter(pages); border-top: 1px solid red; } }" +
+                        "</style></head><body>",
+                        "</body></html>"));
+
+        Map<RenderMetrics.Counter, Long> counters = new EnumMap<>(RenderMetrics.Counter.class);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        new PdfRendererBuilder()
+            .withHtmlContent(html, null)
+            .useRenderMetrics(new RenderMetrics() {
+                @Override
+                public void stageCompleted(Stage stage, long nanos) {
+                }
+
+                @Override
+                public void counted(Counter counter, long value) {
+                    counters.put(counter, value);
+                }
+            })
+            .toStream(os)
+            .run();
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            assertEquals(4, doc.getNumberOfPages());
+
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int i = 1; i <= 4; i++) {
+                stripper.setStartPage(i);
+                stripper.setEndPage(i);
+                String text = stripper.getText(doc);
+
+                assertThat(text, containsString("Static header"));
+                assertThat(text, containsString("Page " + i + " of 4"));
+            }
+
+            // One form for the header and one for the border of the footer.
+            assertEquals(2, doc.getDocument().getObjectsByType(COSName.XOBJECT).stream()
+                    .filter(obj -> COSName.FORM.equals(((COSStream) obj.getObject()).getCOSName(COSName.SUBTYPE)))
+                    .count());
+        }
+
+        assertEquals(Long.valueOf(6), counters.get(RenderMetrics.Counter.GRAPHICS_REUSED));
+    }
+
+    /**
+     * Tests that linked style sheets, images and font files are fetched on the
+     * prefetch executor, once each, and then used by the render. Style sheets are
+     * read with the stream's reader and linked PDFs are checked as PDFs.
+     */
+    @Test
+    public void testResourcePrefetch() throws IOException {
+        Map<String, String> fetchedOn = new ConcurrentHashMap<>();
+        AtomicInteger fetches = new AtomicInteger();
+        AtomicInteger readerFetches = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2, r -> new Thread(r, "prefetch"));
+
+        try {
+            String html =
+                "<html><head><link rel=\"stylesheet\" href=\"style.css\" /></head><body>" +
+                "<p>Prefetched</p><img src=\"back.png\" /><img src=\"back.png\" /><img src=\"denied.pdf\" />" +
+                "</body></html>";
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+            new PdfRendererBuilder()
+                .withHtmlContent(html, "prefetch://test/")
+                .useProtocolsStreamImplementation(url -> new FSStream() {
+                    @Override
+                    public InputStream getStream() {
+                        fetches.incrementAndGet();
+                        fetchedOn.put(url, Thread.currentThread().getName());
+
+                        String file = url.substring("prefetch://test/".length());
+                        if (file.equals("style.css")) {
+                            return new ByteArrayInputStream((
+                                "@font-face { font-family: 'prefetched'; src: url(font.ttf); }" +
+                                "p { font-family: 'prefetched'; }").getBytes(StandardCharsets.UTF_8));
+                        } else if (file.equals("font.ttf")) {
+                            return NonVisualRegressionTest.class.getResourceAsStream(
+                                    "/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf");
+                        } else {
+                            return NonVisualRegressionTest.class.getResourceAsStream("/demos/" + file);
+                        }
+                    }
+
+                    @Override
+                    public Reader getReader() {
+                        readerFetches.incrementAndGet();
+                        return new InputStreamReader(getStream(), StandardCharsets.UTF_8);
+                    }
+                }, "prefetch")
+                .useExternalResourceAccessControl(
+                    (uri, type) -> type != ExternalResourceType.PDF, ExternalResourceControlPriority.RUN_AFTER_RESOLVING_URI)
+                .useResourcePrefetch(executor)
+                .toStream(os)
+                .run();
+
+            assertEquals(3, fetches.get());
+            assertEquals(1, readerFetches.get());
+            assertEquals("prefetch", fetchedOn.get("prefetch://test/style.css"));
+            assertEquals("prefetch", fetchedOn.get("prefetch://test/back.png"));
+            assertEquals("prefetch", fetchedOn.get("prefetch://test/font.ttf"));
+
+            try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+                assertEquals("Prefetched", new PDFTextStripper().getText(doc).trim());
+
+                PDResources resources = doc.getPage(0).getResources();
+                assertThat(resources.getFont(resources.getFontNames().iterator().next()).getName(), containsString("LiberationSans"));
+                assertTrue(resources.getXObjectNames().iterator().hasNext());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     // TODO:
     // + More form controls.
     // + Custom meta info.
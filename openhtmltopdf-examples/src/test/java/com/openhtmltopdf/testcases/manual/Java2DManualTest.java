@@ -1,12 +1,41 @@
 package com.openhtmltopdf.testcases.manual;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.RenderMetrics;
+import com.openhtmltopdf.java2d.Java2DRenderer;
+import com.openhtmltopdf.java2d.api.BandedPageProcessor;
+import com.openhtmltopdf.java2d.api.BufferedImagePageProcessor;
+import com.openhtmltopdf.java2d.api.FSBandedPage;
+import com.openhtmltopdf.java2d.api.FSPageProcessor;
+import com.openhtmltopdf.java2d.api.Java2DRendererBuilder;
 import com.openhtmltopdf.svgsupport.BatikSVGDrawer;
 import com.openhtmltopdf.testlistener.PrintingRunner;
 import com.openhtmltopdf.visualtest.Java2DVisualTester;
@@ -140,4 +169,328 @@ public class Java2DManualTest {
         single("footnotes");
     }
 
+    private static Java2DRendererBuilder pagedBuilder(String html, FSPageProcessor processor) {
+        Java2DRendererBuilder builder = new Java2DRendererBuilder();
+        builder.withHtmlContent(html, null);
+        builder.useFastMode();
+        builder.toPageProcessor(processor);
+        TestSupport.J2D_WITH_FONT.configure(builder);
+        return builder;
+    }
+
+    private static List<BufferedImage> renderPages(String html, ExecutorService executor) throws IOException {
+        BufferedImagePageProcessor processor = new BufferedImagePageProcessor(BufferedImage.TYPE_INT_RGB, 1.0);
+
+        pagedBuilder(html, processor)
+            .useParallelPageRendering(executor)
+            .runPaged();
+
+        return processor.getPageImages();
+    }
+
+    private static void assertSamePage(String message, BufferedImage expected, BufferedImage actual) {
+        assertArrayEquals(message,
+            expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()),
+            actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0, actual.getWidth()));
+    }
+
+    private static String multiPageHtml() {
+        StringBuilder html = new StringBuilder(
+            "<html><head><style>" +
+            "@page { size: 200px 200px; margin: 40px; " +
+            "  @bottom-center { font-family: 'TestFont'; content: 'Page ' counter(page) ' of ' counter(pages); } }" +
+            "body { font-family: 'TestFont'; font-size: 14px; }" +
+            "</style></head><body>" +
+            "<div style=\"position: fixed; top: 0; right: 0; color: red;\">FIXED</div>");
+
+        for (int i = 0; i < 8; i++) {
+            html.append("<p style=\"page-break-before: always;\">Page content " + i + "</p>");
+        }
+
+        html.append("</body></html>");
+
+        return html.toString();
+    }
+
+    /**
+     * Tests that pages painted in parallel, including margin areas and fixed
+     * content which are laid out while painting, match pages painted in order.
+     */
+    @Test
+    public void testParallelPageRendering() throws IOException {
+        String html = multiPageHtml();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<BufferedImage> serial = renderPages(html, null);
+            List<BufferedImage> parallel = renderPages(html, executor);
+
+            assertEquals(9, serial.size());
+            assertEquals(serial.size(), parallel.size());
+
+            for (int i = 0; i < serial.size(); i++) {
+                assertSamePage("Page " + i, serial.get(i), parallel.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that pages painted in parallel with counters and leaders in body text,
+     * which are evaluated and positioned again while painting, match pages painted in order.
+     */
+    @Test
+    public void testParallelPageRenderingWithDynamicFunctions() throws IOException {
+        StringBuilder html = new StringBuilder(
+            "<html><head><style>" +
+            "@page { size: 200px 200px; margin: 20px; }" +
+            "body { font-family: 'TestFont'; font-size: 12px; }" +
+            ".total::after { content: counter(pages); }" +
+            ".ref::after { content: leader('.') target-counter(attr(href), page); }" +
+            "p + p { page-break-before: always; }" +
+            "</style></head><body>");
+
+        for (int i = 0; i < 8; i++) {
+            html.append("<p>Page " + i + " of <span class=\"total\"></span><br/>" +
+                        "<a class=\"ref\" href=\"#last\">Last</a></p>");
+        }
+
+        html.append("<p id=\"last\">Last</p></body></html>");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<BufferedImage> serial = renderPages(html.toString(), null);
+            List<BufferedImage> parallel = renderPages(html.toString(), executor);
+
+            assertEquals(9, serial.size());
+            assertEquals(serial.size(), parallel.size());
+
+            for (int i = 0; i < serial.size(); i++) {
+                assertSamePage("Page " + i, serial.get(i), parallel.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<BufferedImage> renderBackgroundImagePages(
+            String html, ExecutorService executor, Map<String, AtomicInteger> fetches) throws IOException {
+        BufferedImagePageProcessor processor = new BufferedImagePageProcessor(BufferedImage.TYPE_INT_RGB, 1.0);
+
+        pagedBuilder(html, processor)
+            .useProtocolsStreamImplementation(url -> new FSStream() {
+                @Override
+                public InputStream getStream() {
+                    fetches.computeIfAbsent(url, u -> new AtomicInteger()).incrementAndGet();
+
+                    int color = Integer.parseInt(url.substring("bg://".length(), url.length() - ".png".length()));
+                    BufferedImage img = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+
+                    for (int y = 0; y < img.getHeight(); y++) {
+                        for (int x = 0; x < img.getWidth(); x++) {
+                            img.setRGB(x, y, color);
+                        }
+                    }
+
+                    ByteArrayOutputStream os = new ByteArrayOutputStream();
+                    try {
+                        // Slow enough that pages sharing an image ask for it at the same time.
+                        Thread.sleep(20);
+                        ImageIO.write(img, "png", os);
+                    } catch (IOException | InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+
+                    return new ByteArrayInputStream(os.toByteArray());
+                }
+
+                @Override
+                public Reader getReader() {
+                    throw new UnsupportedOperationException();
+                }
+            }, "bg")
+            .useParallelPageRendering(executor)
+            .runPaged();
+
+        return processor.getPageImages();
+    }
+
+    /**
+     * Tests that pages painted in parallel, each with a background image loaded
+     * while painting, match pages painted in order and load each image once.
+     */
+    @Test
+    public void testParallelPageRenderingWithBackgroundImages() throws IOException {
+        StringBuilder html = new StringBuilder(
+            "<html><head><style>" +
+            "@page { size: 100px 100px; margin: 10px; }" +
+            "div { height: 50px; } div + div { page-break-before: always; }" +
+            "</style></head><body>");
+
+        String[] colors = { "16711680", "65280", "255" };
+        for (int i = 0; i < 12; i++) {
+            html.append("<div style=\"background-image: url(bg://" + colors[i % colors.length] + ".png);\"></div>");
+        }
+        html.append("</body></html>");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            Map<String, AtomicInteger> serialFetches = new ConcurrentHashMap<>();
+            Map<String, AtomicInteger> parallelFetches = new ConcurrentHashMap<>();
+
+            List<BufferedImage> serial = renderBackgroundImagePages(html.toString(), null, serialFetches);
+            List<BufferedImage> parallel = renderBackgroundImagePages(html.toString(), executor, parallelFetches);
+
+            assertEquals(12, serial.size());
+            assertEquals(serial.size(), parallel.size());
+
+            for (int i = 0; i < serial.size(); i++) {
+                assertSamePage("Page " + i, serial.get(i), parallel.get(i));
+            }
+
+            assertEquals(colors.length, parallelFetches.size());
+            for (AtomicInteger count : parallelFetches.values()) {
+                assertEquals(1, count.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that pages written one at a time, in any order, from the one
+     * renderer match pages written together.
+     */
+    @Test
+    public void testWritePageInReverseOrder() throws IOException {
+        String html = multiPageHtml();
+        List<BufferedImage> expected = renderPages(html, null);
+
+        BufferedImagePageProcessor processor = new BufferedImagePageProcessor(BufferedImage.TYPE_INT_RGB, 1.0);
+
+        try (Java2DRenderer renderer = pagedBuilder(html, processor).buildJava2DRenderer()) {
+            renderer.layout();
+
+            for (int i = renderer.getPageCount() - 1; i >= 0; i--) {
+                renderer.writePage(i);
+            }
+        }
+
+        List<BufferedImage> actual = processor.getPageImages();
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertSamePage("Page " + i, expected.get(i), actual.get(actual.size() - 1 - i));
+        }
+    }
+
+    /**
+     * Tests that pages painted in bands and streamed out as PNG images match
+     * pages painted all at once, for both paged and single page output.
+     */
+    @Test
+    public void testBandedPageProcessor() throws IOException {
+        String html = multiPageHtml();
+
+        BufferedImagePageProcessor whole = new BufferedImagePageProcessor(BufferedImage.TYPE_INT_RGB, 2.0);
+        pagedBuilder(html, whole).runPaged();
+
+        List<ByteArrayOutputStream> pngs = new ArrayList<>();
+        BandedPageProcessor banded = new BandedPageProcessor(pageNo -> {
+            assertEquals(pngs.size(), pageNo);
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            pngs.add(os);
+            return os;
+        }, BufferedImage.TYPE_INT_RGB, 2.0, 37);
+        pagedBuilder(html, banded).runPaged();
+
+        assertEquals(whole.getPageImages().size(), pngs.size());
+
+        for (int i = 0; i < pngs.size(); i++) {
+            BufferedImage actual = ImageIO.read(new ByteArrayInputStream(pngs.get(i).toByteArray()));
+            assertSamePage("Page " + i, whole.getPageImages().get(i), actual);
+        }
+
+        BufferedImagePageProcessor wholeSingle = new BufferedImagePageProcessor(BufferedImage.TYPE_INT_RGB, 1.0);
+        pagedBuilder(html, wholeSingle).toSinglePage(wholeSingle).runPaged();
+
+        ByteArrayOutputStream singlePng = new ByteArrayOutputStream();
+        BandedPageProcessor bandedSingle = new BandedPageProcessor(pageNo -> singlePng, BufferedImage.TYPE_INT_RGB, 1.0, 50);
+        pagedBuilder(html, bandedSingle).toSinglePage(bandedSingle).runPaged();
+
+        assertSamePage("Single page", wholeSingle.getPageImages().get(0),
+            ImageIO.read(new ByteArrayInputStream(singlePng.toByteArray())));
+    }
+
+    /**
+     * Tests that a banded page finished before all its bands were written
+     * closes its stream and fails instead of leaving a truncated PNG silently.
+     */
+    @Test
+    public void testBandedPageProcessorIncompletePage() {
+        AtomicInteger closed = new AtomicInteger();
+        BandedPageProcessor banded = new BandedPageProcessor(pageNo -> new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.incrementAndGet();
+            }
+        }, BufferedImage.TYPE_INT_RGB, 1.0, 10);
+
+        FSBandedPage page = (FSBandedPage) banded.createPage(0, 20, 50);
+        assertEquals(5, page.getBandCount());
+
+        page.startBand(0);
+        page.finishBand(0);
+
+        try {
+            banded.finishPage(page);
+            fail("Expected an incomplete page to fail");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("10 of 50 rows"));
+        }
+
+        assertEquals(1, closed.get());
+    }
+
+    /**
+     * Tests that Java2D renders report layout, paint and page metrics,
+     * for both serial and parallel painting.
+     */
+    @Test
+    public void testRenderMetrics() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            for (ExecutorService pageExecutor : Arrays.asList(null, executor)) {
+                Map<RenderMetrics.Stage, Long> stages = new EnumMap<>(RenderMetrics.Stage.class);
+                Map<RenderMetrics.Counter, Long> counters = new EnumMap<>(RenderMetrics.Counter.class);
+
+                pagedBuilder(multiPageHtml(), new BufferedImagePageProcessor(BufferedImage.TYPE_INT_RGB, 1.0))
+                    .useParallelPageRendering(pageExecutor)
+                    .useRenderMetrics(new RenderMetrics() {
+                        @Override
+                        public void stageCompleted(Stage stage, long nanos) {
+                            stages.put(stage, nanos);
+                        }
+
+                        @Override
+                        public void counted(Counter counter, long value) {
+                            counters.put(counter, value);
+                        }
+                    })
+                    .runPaged();
+
+                assertTrue(stages.get(RenderMetrics.Stage.LAYOUT) > 0);
+                assertTrue(stages.get(RenderMetrics.Stage.DISPLAY_LIST) > 0);
+                assertTrue(stages.get(RenderMetrics.Stage.PAINT) > 0);
+                assertEquals(Long.valueOf(9), counters.get(RenderMetrics.Counter.PAGES));
+                assertTrue(counters.get(RenderMetrics.Counter.BOXES) > 9);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -4,12 +4,18 @@ import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
 import com.openhtmltopdf.java2d.api.Java2DRendererBuilderState;
+import com.openhtmltopdf.util.LambdaUtil;
 import com.openhtmltopdf.util.LogMessageId;
 import com.openhtmltopdf.util.OpenUtil;
+import com.openhtmltopdf.util.RenderMetricsCollector;
 
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
@@ -22,12 +28,17 @@ import com.openhtmltopdf.context.StyleReference;
 import com.openhtmltopdf.css.constants.IdentValue;
 import com.openhtmltopdf.css.style.CalculatedStyle;
 import com.openhtmltopdf.extend.*;
+import com.openhtmltopdf.extend.RenderMetrics.Counter;
+import com.openhtmltopdf.extend.RenderMetrics.Stage;
+import com.openhtmltopdf.java2d.api.FSBandedPage;
+import com.openhtmltopdf.java2d.api.FSConcurrentPageProcessor;
 import com.openhtmltopdf.java2d.api.FSPage;
 import com.openhtmltopdf.java2d.api.FSPageProcessor;
 import com.openhtmltopdf.layout.BoxBuilder;
 import com.openhtmltopdf.layout.Layer;
 import com.openhtmltopdf.layout.LayoutContext;
 import com.openhtmltopdf.layout.SharedContext;
+import com.openhtmltopdf.newtable.TableBox;
 import com.openhtmltopdf.outputdevice.helper.AddedFont;
 import com.openhtmltopdf.outputdevice.helper.BaseDocument;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceControlPriority;
@@ -37,6 +48,8 @@ import com.openhtmltopdf.outputdevice.helper.UnicodeImplementation;
 import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder.FontStyle;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceType;
 import com.openhtmltopdf.render.BlockBox;
+import com.openhtmltopdf.render.DisplayListItem;
+import com.openhtmltopdf.render.LineBox;
 import com.openhtmltopdf.render.PageBox;
 import com.openhtmltopdf.render.RenderingContext;
 import com.openhtmltopdf.render.ViewportBox;
@@ -44,6 +57,10 @@ import com.openhtmltopdf.render.displaylist.DisplayListCollector;
 import com.openhtmltopdf.render.displaylist.DisplayListContainer;
 import com.openhtmltopdf.render.displaylist.DisplayListPainter;
 import com.openhtmltopdf.render.displaylist.DisplayListContainer.DisplayListPageContainer;
+import com.openhtmltopdf.render.displaylist.DisplayListOperation;
+import com.openhtmltopdf.render.displaylist.PaintBackgroundAndBorders;
+import com.openhtmltopdf.render.displaylist.PaintFixedLayer;
+import com.openhtmltopdf.render.displaylist.PaintInlineContent;
 import com.openhtmltopdf.render.simplepainter.SimplePainter;
 import com.openhtmltopdf.resource.XMLResource;
 import com.openhtmltopdf.simple.extend.XhtmlNamespaceHandler;
@@ -55,6 +72,12 @@ public class Java2DRenderer implements Closeable {
     private final List<FSDOMMutator> _domMutators;
     private final SVGDrawer _mathMLImpl;
 	private BlockBox _root;
+
+	/**
+	 * Collected on first use after layout and kept, so that pages can be
+	 * written in any order without collecting the whole document again.
+	 */
+	private DisplayListContainer _displayList;
 	
 	private final SharedContext _sharedContext;
 	private final Java2DOutputDevice _outputDevice;
@@ -67,6 +90,13 @@ public class Java2DRenderer implements Closeable {
     private Document _doc;
     private final FSObjectDrawerFactory _objectDrawerFactory;
 	private final FSPageProcessor _pageProcessor;
+    private final Executor _pageExecutor;
+    private final Graphics2D _layoutGraphics;
+
+    /**
+     * Held while laying out during painting, see {@link #paintPageConcurrently}.
+     */
+    private final Object _paintLock = new Object();
     
     private static final int DEFAULT_DOTS_PER_PIXEL = 1;
     private static final int DEFAULT_DPI = 72;
@@ -86,12 +116,14 @@ public class Java2DRenderer implements Closeable {
 	    this.diagnosticConsumer = diagnosticConsumer;
 	    _pagingMode = state._pagingMode;
 		_pageProcessor = state._pageProcessor;
+		_pageExecutor = state._pageExecutor;
+		_layoutGraphics = state._layoutGraphics;
 		_initialPageNo = state._initialPageNumber;		
 		this._svgImpl = state._svgImpl;
         this._mathMLImpl = state._mathmlImpl;
         this._domMutators = state._domMutators;
         _objectDrawerFactory = state._objectDrawerFactory;
-		_outputDevice = new Java2DOutputDevice(state._layoutGraphics);
+		_outputDevice = new Java2DOutputDevice(_layoutGraphics);
 		
 		NaiveUserAgent uac = new Java2DUserAgent();
 		
@@ -259,14 +291,27 @@ public class Java2DRenderer implements Closeable {
     }
     
     public void layout() {
-        LayoutContext c = newLayoutContext();
-        BlockBox root = BoxBuilder.createRootBox(c, _doc);
-        root.setContainingBlock(new ViewportBox(getInitialExtents(c)));
-        root.layout(c);
-        Dimension dim = root.getLayer().getPaintingDimension(c);
-        root.getLayer().trimEmptyPages(c, dim.height);
-        root.getLayer().layoutPages(c);
-        _root = root;
+        RenderMetricsCollector metrics = ThreadCtx.metrics();
+        long start = metrics.startStage(Stage.LAYOUT);
+        BlockBox root;
+
+        try {
+            LayoutContext c = newLayoutContext();
+            root = BoxBuilder.createRootBox(c, _doc);
+            root.setContainingBlock(new ViewportBox(getInitialExtents(c)));
+            root.layout(c);
+            Dimension dim = root.getLayer().getPaintingDimension(c);
+            root.getLayer().trimEmptyPages(c, dim.height);
+            root.getLayer().layoutPages(c);
+            _root = root;
+            _displayList = null;
+        } finally {
+            metrics.endStage(Stage.LAYOUT, start);
+        }
+
+        if (metrics.isEnabled()) {
+            metrics.count(Counter.BOXES, LambdaUtil.descendants(root).count());
+        }
     }
     
     private Rectangle getInitialExtents(LayoutContext c) {
@@ -276,15 +321,20 @@ public class Java2DRenderer implements Closeable {
     }
     
     private RenderingContext newRenderingContext() {
+        // The output device holds the graphics of the last page written, so measure with the layout graphics.
+        return newRenderingContext(_outputDevice, _layoutGraphics);
+    }
+
+    private RenderingContext newRenderingContext(Java2DOutputDevice outputDevice, Graphics2D layoutGraphics) {
         RenderingContext result = _sharedContext.newRenderingContextInstance();
-        result.setFontContext(new Java2DFontContext(_outputDevice.getGraphics()));
+        result.setFontContext(new Java2DFontContext(layoutGraphics));
 
-        result.setOutputDevice(_outputDevice);
+        result.setOutputDevice(outputDevice);
         
         if (_reorderer != null)
             result.setBidiReorderer(_reorderer);
         
-        _outputDevice.setRenderingContext(result);
+        outputDevice.setRenderingContext(result);
 
         _sharedContext.getTextRenderer().setup(result.getFontContext());
 
@@ -322,9 +372,18 @@ public class Java2DRenderer implements Closeable {
                 firstPage.getWidth(c) / DEFAULT_DOTS_PER_PIXEL,
                 firstPage.getHeight(c) / DEFAULT_DOTS_PER_PIXEL);
 
-        writePageImages(pages, c, firstPageSize);
+        if (_pageExecutor != null && _pageProcessor instanceof FSConcurrentPageProcessor) {
+            writePageImagesConcurrently(pages, c, (FSConcurrentPageProcessor) _pageProcessor);
+        } else {
+            writePageImages(pages, c, firstPageSize);
+        }
     }
 
+    /**
+     * Writes one page to the page processor. Pages may be written in any order.
+     * The document is collected into a display list on the first call after
+     * {@link #layout()}, so later calls only paint the requested page.
+     */
     public void writePage(int zeroBasedPageNumber) throws IOException {
         List<PageBox> pages = _root.getLayer().getPages();
 
@@ -347,18 +406,27 @@ public class Java2DRenderer implements Closeable {
         FSPage pg = _pageProcessor.createPage(zeroBasedPageNumber, (int) pageSize.getWidth(), (int) pageSize.getHeight());
 
         try {
-            _outputDevice.initializePage(pg.getGraphics());
-            _root.getLayer().assignPagePaintingPositions(c, _pagingMode);
-
-            c.setPageCount(pages.size());
-            c.setPage(zeroBasedPageNumber, page);
-
-            DisplayListCollector boxCollector = new DisplayListCollector(pages);
-            DisplayListContainer displayList = boxCollector.collectRoot(c, _root.getLayer());
+            try {
+                c.setPageCount(pages.size());
+                c.setPage(zeroBasedPageNumber, page);
+
+                DisplayListPageContainer pageOperations = getDisplayList(c).getPageInstructions(zeroBasedPageNumber);
+
+                RenderMetricsCollector metrics = ThreadCtx.metrics();
+                long paintStart = metrics.startStage(Stage.PAINT);
+                try {
+                    paintBands(pg, _outputDevice, () -> paintPage(c, _outputDevice, page, pageOperations));
+                } finally {
+                    metrics.endStage(Stage.PAINT, paintStart);
+                }
+                metrics.count(Counter.PAGES, 1);
+            } catch (Throwable e) {
+                finishFailedPage(pg, e);
+                throw e;
+            }
 
-            paintPage(c, page, displayList.getPageInstructions(zeroBasedPageNumber));
-        } finally {
             _pageProcessor.finishPage(pg);
+        } finally {
             _outputDevice.finish(c, _root);
         }
     }
@@ -386,34 +454,67 @@ public class Java2DRenderer implements Closeable {
         FSPage pg = _pageProcessor.createPage(0, (int) pageSize.getWidth(), rootHeight + top + bottom);
 
         try {
-            _outputDevice.initializePage(pg.getGraphics());
-            _root.getLayer().assignPagePaintingPositions(c, _pagingMode);
-            page.setPaintingBottom(rootHeight + top + bottom);
+            try {
+                _root.getLayer().assignPagePaintingPositions(c, _pagingMode);
+                page.setPaintingBottom(rootHeight + top + bottom);
 
-            c.setPageCount(pages.size());
-            c.setPage(0, page);
+                c.setPageCount(pages.size());
+                c.setPage(0, page);
 
-            page.paintBackground(c, 0, _pagingMode);
-            page.paintMarginAreas(c, 0, _pagingMode);
-            page.paintBorder(c, 0, _pagingMode);
+                RenderMetricsCollector metrics = ThreadCtx.metrics();
+                long paintStart = metrics.startStage(Stage.PAINT);
 
-            Rectangle printClip = page.getPrintClippingBounds(c);
-            Rectangle pageClip = new Rectangle(0, 0, printClip.width, rootHeight);
+                try {
+                    paintBands(pg, _outputDevice, () -> {
+                        page.paintBackground(c, 0, _pagingMode);
+                        page.paintMarginAreas(c, 0, _pagingMode);
+                        page.paintBorder(c, 0, _pagingMode);
 
-            _outputDevice.pushTransformLayer(AffineTransform.getTranslateInstance(left, top));
-            _outputDevice.pushClip(pageClip);
+                        Rectangle printClip = page.getPrintClippingBounds(c);
+                        Rectangle pageClip = new Rectangle(0, 0, printClip.width, rootHeight);
 
-            SimplePainter painter = new SimplePainter(0, 0);
-            painter.paintLayer(c, _root.getLayer());
+                        _outputDevice.pushTransformLayer(AffineTransform.getTranslateInstance(left, top));
+                        _outputDevice.pushClip(pageClip);
+
+                        SimplePainter painter = new SimplePainter(0, 0);
+                        painter.paintLayer(c, _root.getLayer());
+
+                        _outputDevice.popClip();
+                        _outputDevice.popTransformLayer();
+                    });
+                } finally {
+                    metrics.endStage(Stage.PAINT, paintStart);
+                }
+
+                metrics.count(Counter.PAGES, 1);
+            } catch (Throwable e) {
+                finishFailedPage(pg, e);
+                throw e;
+            }
 
-            _outputDevice.popClip();
-            _outputDevice.popTransformLayer();
-        } finally {
             _pageProcessor.finishPage(pg);
+        } finally {
             _outputDevice.finish(c, _root);
         }
     }
 
+    private DisplayListContainer getDisplayList(RenderingContext c) {
+        if (_displayList == null) {
+            long start = ThreadCtx.metrics().startStage(Stage.DISPLAY_LIST);
+
+            try {
+                _root.getLayer().assignPagePaintingPositions(c, _pagingMode);
+
+                DisplayListCollector boxCollector = new DisplayListCollector(_root.getLayer().getPages());
+                _displayList = boxCollector.collectRoot(c, _root.getLayer());
+            } finally {
+                ThreadCtx.metrics().endStage(Stage.DISPLAY_LIST, start);
+            }
+        }
+
+        return _displayList;
+    }
+
     public int getPageCount() {
         return _root.getLayer().getPages().size();
     }
@@ -425,14 +526,12 @@ public class Java2DRenderer implements Closeable {
 
         _outputDevice.setRoot(_root);
 
-        _root.getLayer().assignPagePaintingPositions(c, _pagingMode);
-
         int pageCount = _root.getLayer().getPages().size();
 
         c.setPageCount(pageCount);
 
-        DisplayListCollector boxCollector = new DisplayListCollector(pages);
-        DisplayListContainer displayList = boxCollector.collectRoot(c, _root.getLayer());
+        DisplayListContainer displayList = getDisplayList(c);
+        RenderMetricsCollector metrics = ThreadCtx.metrics();
 
         for (int i = 0; i < pageCount; i++) {
             PageBox currentPage = pages.get(i);
@@ -444,52 +543,227 @@ public class Java2DRenderer implements Closeable {
                      currentPage.getWidth(c) / DEFAULT_DOTS_PER_PIXEL,
                      currentPage.getHeight(c) / DEFAULT_DOTS_PER_PIXEL));
 
-            FSPage pg = initPage(pageSize, i);
+            FSPage pg = _pageProcessor.createPage(i, (int) pageSize.getWidth(), (int) pageSize.getHeight());
+            DisplayListPageContainer pageOperations = displayList.getPageInstructions(i);
+
+            long paintStart = metrics.startStage(Stage.PAINT);
 
             try {
-                paintPage(c, currentPage, displayList.getPageInstructions(i));
+                paintBands(pg, _outputDevice, () -> paintPage(c, _outputDevice, currentPage, pageOperations));
             } catch (Throwable e) {
-                _pageProcessor.finishPage(pg);
+                finishFailedPage(pg, e);
                 throw e;
+            } finally {
+                metrics.endStage(Stage.PAINT, paintStart);
             }
 
             _pageProcessor.finishPage(pg);
         }
 
+        metrics.count(Counter.PAGES, pageCount);
+
         _outputDevice.finish(c, _root);
     }
 
-    private FSPage initPage(Rectangle2D pageSize, int idx) {
-        FSPage pg = _pageProcessor.createPage(idx, (int) pageSize.getWidth(), (int) pageSize.getHeight());
-
+    /**
+     * Finishes a page whose painting threw <code>failure</code>. An error from the page
+     * processor, such as an incomplete banded image, is added to <code>failure</code>
+     * as suppressed rather than replacing it.
+     */
+    private void finishFailedPage(FSPage pg, Throwable failure) {
         try {
-            _outputDevice.initializePage(pg.getGraphics());
-        } catch (Throwable e) {
             _pageProcessor.finishPage(pg);
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Paints a page with <code>painter</code>. A {@link FSBandedPage} is painted
+     * once for each of its bands.
+     */
+    private void paintBands(FSPage pg, Java2DOutputDevice outputDevice, Runnable painter) {
+        if (pg instanceof FSBandedPage) {
+            FSBandedPage bandedPage = (FSBandedPage) pg;
+
+            for (int band = 0; band < bandedPage.getBandCount(); band++) {
+                outputDevice.initializePage(bandedPage.startBand(band));
+                painter.run();
+                bandedPage.finishBand(band);
+            }
+        } else {
+            outputDevice.initializePage(pg.getGraphics());
+            painter.run();
+        }
+    }
+
+    private void writePageImagesConcurrently(
+            List<PageBox> pages,
+            RenderingContext c,
+            FSConcurrentPageProcessor pageProcessor) throws IOException {
+
+        _outputDevice.setRoot(_root);
+
+        int pageCount = pages.size();
+
+        c.setPageCount(pageCount);
+
+        DisplayListContainer displayList = getDisplayList(c);
+
+        Thread renderingThread = Thread.currentThread();
+        List<CompletableFuture<FSPage>> painted = new ArrayList<>(pageCount);
+
+        // Metrics are collected per thread, so paint time is the time
+        // this thread waits for pages, including finishing them.
+        RenderMetricsCollector metrics = ThreadCtx.metrics();
+        long paintStart = metrics.startStage(Stage.PAINT);
+
+        try {
+            for (int i = 0; i < pageCount; i++) {
+                int pageNo = i;
+                DisplayListPageContainer pageOperations = displayList.getPageInstructions(i);
+
+                painted.add(CompletableFuture.supplyAsync(
+                        () -> paintPageConcurrently(pageProcessor, pages.get(pageNo), pageNo, pageCount, pageOperations, renderingThread),
+                        _pageExecutor));
+            }
+
+            for (CompletableFuture<FSPage> page : painted) {
+                pageProcessor.finishPage(page.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
             throw e;
+        } finally {
+            // Make sure no page is still being painted when we return.
+            for (CompletableFuture<FSPage> page : painted) {
+                OpenUtil.tryQuietly(page::join);
+            }
+
+            metrics.endStage(Stage.PAINT, paintStart);
+        }
+
+        metrics.count(Counter.PAGES, pageCount);
+
+        _outputDevice.finish(c, _root);
+    }
+
+    /**
+     * Paints a page on an executor thread with its own output device and rendering context.
+     * Page margin areas, fixed layers, tables with repeating headers and lines with
+     * dynamic functions such as <code>counter(pages)</code>, <code>target-counter</code>
+     * or leaders are laid out while painting, which changes the shared box tree, so that
+     * is done holding {@link #_paintLock}. Images first used while painting are loaded
+     * through {@link Java2DUserAgent}, which is safe to use from many threads.
+     */
+    private FSPage paintPageConcurrently(
+            FSConcurrentPageProcessor pageProcessor,
+            PageBox page,
+            int pageNo,
+            int pageCount,
+            DisplayListPageContainer pageOperations,
+            Thread renderingThread) {
+
+        Graphics2D layoutGraphics;
+        synchronized (_paintLock) {
+            layoutGraphics = (Graphics2D) _layoutGraphics.create();
         }
 
-        return pg;
+        _sharedContext.registerWithThread();
+
+        try {
+            Java2DOutputDevice outputDevice = new Java2DOutputDevice(layoutGraphics);
+            outputDevice.setRoot(_root);
+
+            RenderingContext c = newRenderingContext(outputDevice, layoutGraphics);
+            c.setInitialPageNo(_initialPageNo);
+            c.setFastRenderer(true);
+            c.setPageCount(pageCount);
+            c.setPage(pageNo, page);
+
+            FSPage pg = pageProcessor.createPage(pageNo,
+                    page.getWidth(c) / DEFAULT_DOTS_PER_PIXEL,
+                    page.getHeight(c) / DEFAULT_DOTS_PER_PIXEL);
+
+            try {
+                if (isLaidOutWhilePainting(pageOperations)) {
+                    synchronized (_paintLock) {
+                        paintBands(pg, outputDevice, () -> paintPage(c, outputDevice, page, pageOperations));
+                    }
+                } else {
+                    paintBands(pg, outputDevice, () -> {
+                        synchronized (_paintLock) {
+                            paintPageMargins(c, page);
+                        }
+                        paintPageContent(c, outputDevice, page, pageOperations);
+                    });
+                }
+            } finally {
+                pageProcessor.completePage(pg);
+            }
+
+            return pg;
+        } finally {
+            if (Thread.currentThread() != renderingThread) {
+                _sharedContext.removeFromThread();
+            }
+            layoutGraphics.dispose();
+        }
+    }
+
+    private static boolean isLaidOutWhilePainting(DisplayListPageContainer pageOperations) {
+        for (DisplayListOperation op : pageOperations.getOperations()) {
+            if (op instanceof PaintFixedLayer) {
+                return true;
+            } else if (op instanceof PaintBackgroundAndBorders) {
+                for (DisplayListItem item : ((PaintBackgroundAndBorders) op).getBlocks()) {
+                    if (item instanceof TableBox && ((TableBox) item).hasContentLimitContainer()) {
+                        return true;
+                    }
+                }
+            } else if (op instanceof PaintInlineContent) {
+                // Lines with dynamic functions are evaluated and positioned again
+                // as they are painted, see LineBox#paintInline.
+                for (DisplayListItem item : ((PaintInlineContent) op).getInlines()) {
+                    if (item instanceof LineBox && ((LineBox) item).isContainsDynamicFunction()) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
     }
 
-    private void paintPage(RenderingContext c, PageBox page, DisplayListPageContainer pageOperations) {
+    private void paintPage(RenderingContext c, Java2DOutputDevice outputDevice, PageBox page, DisplayListPageContainer pageOperations) {
+        paintPageMargins(c, page);
+        paintPageContent(c, outputDevice, page, pageOperations);
+    }
+
+    private void paintPageMargins(RenderingContext c, PageBox page) {
         page.paintBackground(c, 0, _pagingMode);
         page.paintMarginAreas(c, 0, _pagingMode);
         page.paintBorder(c, 0, _pagingMode);
+    }
 
+    private void paintPageContent(RenderingContext c, Java2DOutputDevice outputDevice, PageBox page, DisplayListPageContainer pageOperations) {
         int top = -page.getPaintingTop() + page.getMarginBorderPadding(c, CalculatedStyle.TOP);
         int left = page.getMarginBorderPadding(c, CalculatedStyle.LEFT);
 
         Rectangle content = new Rectangle(0, page.getPaintingTop(), page.getContentWidth(c), page.getContentHeight(c));
 
-        _outputDevice.pushTransformLayer(AffineTransform.getTranslateInstance(left, top));
-        _outputDevice.pushClip(content);
+        outputDevice.pushTransformLayer(AffineTransform.getTranslateInstance(left, top));
+        outputDevice.pushClip(content);
 
         DisplayListPainter painter = new DisplayListPainter();
         painter.paint(c, pageOperations);
 
-        _outputDevice.popClip();
-        _outputDevice.popTransformLayer();
+        outputDevice.popClip();
+        outputDevice.popTransformLayer();
     }
 
     @Override
@@ -23,11 +23,15 @@ public class Java2DUserAgent extends NaiveUserAgent {
      * be accessed (using the set HttpStreamFactory or URL::openStream), opened, read and then passed into the JDK image-parsing routines.
      * The result is packed up into an ImageResource for later consumption.
      *
+     * <br><br>
+     * Synchronized as pages painted in parallel load background and list images
+     * from many threads, through the same per run cache.
+     *
      * @param uri Location of the image source.
      * @return An ImageResource containing the image.
      */
     @Override
-    public ImageResource getImageResource(String uri, ExternalResourceType type) {
+    public synchronized ImageResource getImageResource(String uri, ExternalResourceType type) {
         ImageResource ir;
 
         if (!checkAccessAllowed(uri, type, ExternalResourceControlPriority.RUN_BEFORE_RESOLVING_URI)) {
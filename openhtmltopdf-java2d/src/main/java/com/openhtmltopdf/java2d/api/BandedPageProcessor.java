@@ -0,0 +1,172 @@
+package com.openhtmltopdf.java2d.api;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.openhtmltopdf.util.OpenUtil;
+
+/**
+ * Page processor which paints each page in horizontal bands and streams
+ * them out as a PNG image. Only one band is held in memory at a time, so
+ * peak memory depends on the band height and page width rather than the
+ * page area. This makes it suitable for very large pages or high resolutions.
+ * <br><br>
+ * The renderer paints the whole page once per band, so fewer, taller bands
+ * are faster. This page processor is not thread safe as the band buffer is
+ * shared between pages.
+ * <br><br>
+ * If a page is finished before all its bands were written, for example because
+ * painting failed, its stream is closed and {@link #finishPage(FSPage)} throws
+ * <code>IllegalStateException</code>. What was written to the stream is not a valid
+ * PNG and should be discarded.
+ */
+public class BandedPageProcessor implements FSPageProcessor {
+	private final FSPageOutputStreamSupplier _osFactory;
+	private final int _imageType;
+	private final double _scale;
+	private final int _bandHeight;
+
+	private BufferedImage _band;
+
+	private class BandedPage implements FSBandedPage {
+		private final int _pgNo;
+		private final int _width;
+		private final int _height;
+
+		private OutputStream _os;
+		private PngBandWriter _writer;
+		private Graphics2D _graphics;
+		private int _bandRows;
+
+		BandedPage(int pgNo, int width, int height) {
+			_pgNo = pgNo;
+			_width = width;
+			_height = height;
+		}
+
+		@Override
+		public int getBandCount() {
+			return (_height + _bandHeight - 1) / _bandHeight;
+		}
+
+		@Override
+		public Graphics2D startBand(int band) {
+			int top = band * _bandHeight;
+			_bandRows = Math.min(_bandHeight, _height - top);
+
+			BufferedImage image = getBandImage(_width);
+			_graphics = image.createGraphics();
+
+			if (image.getColorModel().hasAlpha()) {
+				/* We need to clear with white transparent */
+				_graphics.setBackground(new Color(255, 255, 255, 0));
+				_graphics.clearRect(0, 0, _width, _bandHeight);
+			} else {
+				_graphics.setColor(Color.WHITE);
+				_graphics.fillRect(0, 0, _width, _bandHeight);
+			}
+
+			_graphics.clipRect(0, 0, _width, _bandRows);
+			_graphics.translate(0, -top);
+			_graphics.scale(_scale, _scale);
+
+			return _graphics;
+		}
+
+		@Override
+		public void finishBand(int band) {
+			_graphics.dispose();
+			_graphics = null;
+
+			try {
+				if (_writer == null) {
+					_os = _osFactory.supply(_pgNo);
+					_writer = new PngBandWriter(_os, _width, _height, _band.getColorModel().hasAlpha());
+				}
+
+				_writer.writeRows(_band, _bandRows);
+			} catch (IOException e) {
+				throw new RuntimeException("Couldn't write page image band to output stream", e);
+			}
+		}
+
+		@Override
+		public Graphics2D getGraphics() {
+			return _graphics;
+		}
+
+		void save() {
+			try {
+				if (_writer != null) {
+					if (_writer.isComplete()) {
+						_writer.finish();
+					} else {
+						_writer.abort();
+						throw new IllegalStateException(
+								"Page " + _pgNo + " image is incomplete, only " + _writer.getRowsWritten() +
+								" of " + _writer.getHeight() + " rows were written");
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Couldn't write page image to output stream", e);
+			} finally {
+				if (_graphics != null) {
+					_graphics.dispose();
+					_graphics = null;
+				}
+				OpenUtil.closeQuietly(_os);
+			}
+		}
+	}
+
+	/**
+	 * Creates a page processor which saves each page as a PNG image, painted in bands.
+	 * @param osFactory must supply an output stream for each page. The os
+	 * will be closed by the page processor.
+	 * @param imageType must be either BufferedImage.TYPE_INT_RGB or BufferedImage.TYPE_INT_ARGB.
+	 * @param scale scale factor to control the resolution of the images.
+	 * @param bandHeight height of each band in image pixels.
+	 */
+	public BandedPageProcessor(FSPageOutputStreamSupplier osFactory, int imageType, double scale, int bandHeight) {
+		if (imageType != BufferedImage.TYPE_INT_RGB && imageType != BufferedImage.TYPE_INT_ARGB) {
+			throw new IllegalArgumentException("imageType must be TYPE_INT_RGB or TYPE_INT_ARGB");
+		}
+		if (bandHeight <= 0) {
+			throw new IllegalArgumentException("bandHeight must be positive");
+		}
+
+		_osFactory = osFactory;
+		_imageType = imageType;
+		_scale = scale;
+		_bandHeight = bandHeight;
+	}
+
+	/**
+	 * Create a graphics device that can be supplied to useLayoutGraphics.
+	 * The caller is responsible for calling dispose on the returned device.
+	 */
+	public Graphics2D createLayoutGraphics() {
+		BufferedImage bf = new BufferedImage(1, 1, _imageType);
+		return bf.createGraphics();
+	}
+
+	private BufferedImage getBandImage(int width) {
+		if (_band == null || _band.getWidth() != width) {
+			_band = new BufferedImage(width, _bandHeight, _imageType);
+		}
+		return _band;
+	}
+
+	@Override
+	public FSPage createPage(int zeroBasedPageNumber, int width, int height) {
+		return new BandedPage(zeroBasedPageNumber, (int) (width * _scale), (int) (height * _scale));
+	}
+
+	@Override
+	public void finishPage(FSPage pg) {
+		((BandedPage) pg).save();
+	}
+}
@@ -8,7 +8,7 @@ import java.util.List;
 /**
  * PageProcessor to render everything to buffered images
  */
-public class BufferedImagePageProcessor implements FSPageProcessor {
+public class BufferedImagePageProcessor implements FSConcurrentPageProcessor {
 	private final double _scale;
 	private final int _imageType;
 
@@ -61,16 +61,23 @@ public class BufferedImagePageProcessor implements FSPageProcessor {
 	@Override
 	public FSPage createPage(int zeroBasedPageNumber, int width, int height) {
 		BufferedImage image = new BufferedImage((int) (width * _scale), (int) (height * _scale), _imageType);
-		BufferedImagePage bufferedImagePage = new BufferedImagePage(image);
-		_pages.add(bufferedImagePage);
-		return bufferedImagePage;
+		return new BufferedImagePage(image);
 	}
 
     @Override
-    public void finishPage(FSPage pg) {
+    public void completePage(FSPage pg) {
         BufferedImagePage page = (BufferedImagePage) pg;
-        page.graphics.dispose();
-        page.graphics = null;
+        if (page.graphics != null) {
+            page.graphics.dispose();
+            page.graphics = null;
+        }
+    }
+
+    @Override
+    public void finishPage(FSPage pg) {
+        completePage(pg);
+        /* Pages are finished in page order, even when painted in parallel */
+        _pages.add((BufferedImagePage) pg);
     }
 
 	public List<BufferedImage> getPageImages() {
@@ -5,16 +5,18 @@ import com.openhtmltopdf.util.OpenUtil;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
-public class DefaultPageProcessor implements FSPageProcessor {
+public class DefaultPageProcessor implements FSConcurrentPageProcessor {
 	public static class DefaultPage implements FSPage {
 		private final BufferedImage _img;
 		private final Graphics2D _g2d;
 		private final int _pgNo;
 		private final FSPageOutputStreamSupplier _osf;
 		private final String _imgFrmt;
+		private byte[] _encoded;
 
         public DefaultPage(int pgNo, int w, int h, FSPageOutputStreamSupplier osFactory, int imageType, String imageFormat) {
             _img = new BufferedImage(w, h, imageType);
@@ -45,11 +47,28 @@ public class DefaultPageProcessor implements FSPageProcessor {
 			return _g2d;
 		}
 		
+		/**
+		 * Encodes the page image, ready for {@link #save()}.
+		 */
+		public void encode() {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try {
+				ImageIO.write(_img, _imgFrmt, baos);
+			} catch (IOException e) {
+				throw new RuntimeException("Couldn't encode page image", e);
+			}
+			_encoded = baos.toByteArray();
+		}
+
 		public void save() {
 			OutputStream os = null;
 			try {
 				os = _osf.supply(_pgNo);
-				ImageIO.write(_img, _imgFrmt, os);
+				if (_encoded != null) {
+					os.write(_encoded);
+				} else {
+					ImageIO.write(_img, _imgFrmt, os);
+				}
 			} catch (IOException e) {
 				throw new RuntimeException("Couldn't write page image to output stream", e);
 			} finally {
@@ -89,6 +108,13 @@ public class DefaultPageProcessor implements FSPageProcessor {
 		return new DefaultPage(zeroBasedPageNumber, width, height, _osFactory, _imageType, _imageFormat);
 	}
 
+	@Override
+	public void completePage(FSPage pg) {
+		DefaultPage page = (DefaultPage) pg;
+		page.getGraphics().dispose();
+		page.encode();
+	}
+
 	@Override
 	public void finishPage(FSPage pg) {
 		DefaultPage page = (DefaultPage) pg;
@@ -0,0 +1,21 @@
+package com.openhtmltopdf.java2d.api;
+
+import java.awt.Graphics2D;
+
+/**
+ * A page that is painted in horizontal bands rather than all at once, so
+ * that only one band needs to be held in memory. The renderer paints the
+ * whole page once for each band, with output outside the band clipped.
+ */
+public interface FSBandedPage extends FSPage {
+	public int getBandCount();
+
+	/**
+	 * Returns the graphics to paint the page with for the given band. These are
+	 * clipped to the band and also returned by {@link #getGraphics()} until
+	 * {@link #finishBand(int)} is called.
+	 */
+	public Graphics2D startBand(int band);
+
+	public void finishBand(int band);
+}
@@ -0,0 +1,24 @@
+package com.openhtmltopdf.java2d.api;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A page processor that pages can be painted on concurrently. See
+ * {@link Java2DRendererBuilder#useParallelPageRendering(Executor)}.
+ * <br><br>
+ * When rendering in parallel, {@link #createPage(int, int, int)} and
+ * {@link #completePage(FSPage)} are called on the executor threads, possibly for
+ * several pages at once, so they must be thread safe. {@link #finishPage(FSPage)}
+ * is then called on the rendering thread for each page in page order, so output
+ * can be delivered in order.
+ * <br><br>
+ * When rendering one page after another, {@link #completePage(FSPage)} is not
+ * called and page processors should do all their work in {@link #finishPage(FSPage)}.
+ */
+public interface FSConcurrentPageProcessor extends FSPageProcessor {
+	/**
+	 * Called on the painting thread once the page has been painted. This is the place
+	 * for expensive work such as encoding the page image.
+	 */
+	public void completePage(FSPage pg);
+}
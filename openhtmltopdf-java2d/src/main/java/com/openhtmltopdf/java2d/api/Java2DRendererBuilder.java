@@ -4,6 +4,7 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import com.openhtmltopdf.extend.OutputDevice;
 import com.openhtmltopdf.java2d.Java2DRenderer;
@@ -70,6 +71,30 @@ public class Java2DRendererBuilder extends BaseRendererBuilder<Java2DRendererBui
 		return this;
 	}
 
+	/**
+	 * Paint pages in parallel on the given executor once layout is complete. Each page
+	 * is painted with its own output device and rendering context and then passed to
+	 * {@link FSConcurrentPageProcessor#completePage(FSPage)} on the same thread, so
+	 * image encoding also happens in parallel. Pages are finished on the rendering thread
+	 * in page order.
+	 * 
+	 * This only applies to paged output with a page processor that implements
+	 * {@link FSConcurrentPageProcessor}, such as {@link DefaultPageProcessor} or
+	 * {@link BufferedImagePageProcessor}. Otherwise pages are painted one after another.
+	 * 
+	 * Page margin areas, fixed position content and tables with repeating headers are
+	 * laid out while painting, so these are painted one page at a time.
+	 * 
+	 * The executor is not shut down by the renderer, so it may be shared between renders.
+	 * 
+	 * @param executor executor to paint pages on, or null to paint on the rendering thread (the default).
+	 * @return this for method chaining
+	 */
+	public Java2DRendererBuilder useParallelPageRendering(Executor executor) {
+		state._pageExecutor = executor;
+		return this;
+	}
+
 	/**
 	 * <code>useLayoutGraphics</code> and <code>toPageProcessor</code> MUST have
 	 * been called. Also a document MUST have been set with one of the with*
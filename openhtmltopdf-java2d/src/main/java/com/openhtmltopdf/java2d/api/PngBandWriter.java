@@ -0,0 +1,187 @@
+package com.openhtmltopdf.java2d.api;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG a few rows at a time, so the whole image never has to be in memory.
+ * Rows are written as 8 bit RGB or RGBA with the sub filter.
+ */
+class PngBandWriter {
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+	private static final int IDAT_SIZE = 32 * 1024;
+
+	private final DataOutputStream _os;
+	private final int _width;
+	private final int _height;
+	private final int _bytesPerPixel;
+	private final Deflater _deflater = new Deflater();
+	private final DeflaterOutputStream _idat;
+
+	private final int[] _argb;
+	private final byte[] _row;
+	private final byte[] _filtered;
+	private int _rowsWritten;
+
+	PngBandWriter(OutputStream os, int width, int height, boolean alpha) throws IOException {
+		_os = new DataOutputStream(os);
+		_width = width;
+		_height = height;
+		_bytesPerPixel = alpha ? 4 : 3;
+		_idat = new DeflaterOutputStream(new IdatOutputStream(), _deflater, IDAT_SIZE);
+
+		_argb = new int[width];
+		_row = new byte[width * _bytesPerPixel];
+		_filtered = new byte[1 + _row.length];
+
+		byte[] header = new byte[13];
+		writeInt(header, 0, width);
+		writeInt(header, 4, height);
+		header[8] = 8;                   // Bit depth.
+		header[9] = (byte) (alpha ? 6 : 2); // Color type: RGBA or RGB.
+		// Compression, filter and interlace methods are all zero.
+
+		try {
+			_os.write(SIGNATURE);
+			writeChunk("IHDR", header, header.length);
+		} catch (IOException | RuntimeException e) {
+			_deflater.end();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the first <code>rows</code> rows of <code>band</code> which must be
+	 * the same width as this image.
+	 */
+	void writeRows(BufferedImage band, int rows) throws IOException {
+		if (_rowsWritten + rows > _height) {
+			throw new IllegalStateException("Too many rows for image height");
+		}
+
+		for (int y = 0; y < rows; y++) {
+			band.getRGB(0, y, _width, 1, _argb, 0, _width);
+
+			int i = 0;
+			for (int pixel : _argb) {
+				_row[i++] = (byte) (pixel >> 16);
+				_row[i++] = (byte) (pixel >> 8);
+				_row[i++] = (byte) pixel;
+				if (_bytesPerPixel == 4) {
+					_row[i++] = (byte) (pixel >> 24);
+				}
+			}
+
+			_filtered[0] = 1; // Sub filter.
+			for (int x = 0; x < _row.length; x++) {
+				_filtered[x + 1] = (byte) (_row[x] - (x >= _bytesPerPixel ? _row[x - _bytesPerPixel] : 0));
+			}
+
+			_idat.write(_filtered);
+		}
+
+		_rowsWritten += rows;
+	}
+
+	boolean isComplete() {
+		return _rowsWritten == _height;
+	}
+
+	int getRowsWritten() {
+		return _rowsWritten;
+	}
+
+	int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * Releases the compressor without writing the end of the image,
+	 * for when not all rows could be written.
+	 */
+	void abort() {
+		_deflater.end();
+	}
+
+	/**
+	 * Writes the end of the image. All rows must have been written.
+	 */
+	void finish() throws IOException {
+		if (!isComplete()) {
+			throw new IllegalStateException("Only " + _rowsWritten + " of " + _height + " rows written");
+		}
+
+		try {
+			_idat.finish();
+			_idat.flush();
+		} finally {
+			_deflater.end();
+		}
+
+		writeChunk("IEND", new byte[0], 0);
+		_os.flush();
+	}
+
+	private static void writeInt(byte[] dest, int offset, int value) {
+		dest[offset] = (byte) (value >>> 24);
+		dest[offset + 1] = (byte) (value >>> 16);
+		dest[offset + 2] = (byte) (value >>> 8);
+		dest[offset + 3] = (byte) value;
+	}
+
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		_os.writeInt(length);
+		_os.write(typeBytes);
+		_os.write(data, 0, length);
+		_os.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Splits the compressed image data into IDAT chunks.
+	 */
+	private class IdatOutputStream extends OutputStream {
+		private final byte[] _buffer = new byte[IDAT_SIZE];
+		private int _length;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int count = Math.min(len, _buffer.length - _length);
+				System.arraycopy(b, off, _buffer, _length, count);
+
+				_length += count;
+				off += count;
+				len -= count;
+
+				if (_length == _buffer.length) {
+					flush();
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (_length > 0) {
+				writeChunk("IDAT", _buffer, _length);
+				_length = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.filter.Filter;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+/**
+ * Compresses page content streams on an executor while later pages are still being painted.
+ * Pages are painted into uncompressed content streams and handed to {@link #submit(PDPage)}
+ * once finished. Compressed bytes are written back to the streams in page order, on the
+ * calling thread, as they become available and at {@link #finish()}.
+ *
+ * Only the compression itself runs on other threads, as PDFBox document
+ * objects are not thread safe.
+ */
+class PdfBoxContentStreamEncoder {
+    private final Executor _executor;
+    private final Deque<PendingStream> _pending = new ArrayDeque<>();
+
+    private static class PendingStream {
+        final COSStream stream;
+        final CompletableFuture<byte[]> compressed;
+
+        PendingStream(COSStream stream, CompletableFuture<byte[]> compressed) {
+            this.stream = stream;
+            this.compressed = compressed;
+        }
+    }
+
+    PdfBoxContentStreamEncoder(Executor executor) {
+        this._executor = executor;
+    }
+
+    /**
+     * Queues compression of the content stream most recently added to a page.
+     */
+    void submit(PDPage page) throws IOException {
+        COSStream stream = getLastContentStream(page);
+
+        if (stream == null || stream.getItem(COSName.FILTER) != null) {
+            return;
+        }
+
+        byte[] raw;
+        try (InputStream in = stream.createRawInputStream()) {
+            raw = IOUtils.toByteArray(in);
+        }
+
+        // Empty the stream so the page is not held twice until it is compressed.
+        stream.createRawOutputStream().close();
+
+        _pending.add(new PendingStream(stream, CompletableFuture.supplyAsync(() -> deflate(raw), _executor)));
+
+        // Write back what is already done so compressed pages are not held in memory.
+        while (!_pending.isEmpty() && _pending.peek().compressed.isDone()) {
+            writeBack(_pending.poll());
+        }
+    }
+
+    /**
+     * Waits for outstanding compression and writes it back to the content streams.
+     */
+    void finish() throws IOException {
+        while (!_pending.isEmpty()) {
+            writeBack(_pending.poll());
+        }
+    }
+
+    private static COSStream getLastContentStream(PDPage page) {
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+
+        if (contents instanceof COSArray && ((COSArray) contents).size() > 0) {
+            COSArray array = (COSArray) contents;
+            contents = array.getObject(array.size() - 1);
+        }
+
+        return contents instanceof COSStream ? (COSStream) contents : null;
+    }
+
+    private static void writeBack(PendingStream pending) throws IOException {
+        byte[] compressed;
+
+        try {
+            compressed = pending.compressed.join();
+        } catch (CompletionException e) {
+            throw new IOException("Could not compress page content stream", e.getCause());
+        }
+
+        try (OutputStream out = pending.stream.createRawOutputStream()) {
+            out.write(compressed);
+        }
+
+        pending.stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Filter.getCompressionLevel());
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+
+        try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(out, deflater)) {
+            deflaterStream.write(raw);
+        } catch (IOException e) {
+            // Not possible when writing to a ByteArrayOutputStream.
+            throw new CompletionException(e);
+        } finally {
+            deflater.end();
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,239 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import com.openhtmltopdf.extend.FSCacheValue;
+
+/**
+ * An image XObject in the form it is written to a PDF, so that an image used by
+ * many documents is only decoded and compressed once. Copying it into a document
+ * copies bytes: JPEG images keep their original data (DCTDecode) and other images
+ * keep their compressed pixel data, along with any soft mask, color space
+ * and decode parameters streams.
+ *
+ * Immutable, so it can be shared between renders in the image cache.
+ */
+public class PdfBoxEmbeddedImage implements FSCacheValue {
+    private final FrozenStream _stream;
+    private final float _width;
+    private final float _height;
+    private final int _weight;
+
+    private PdfBoxEmbeddedImage(FrozenStream stream, float width, float height, int weight) {
+        this._stream = stream;
+        this._width = width;
+        this._height = height;
+        this._weight = weight;
+    }
+
+    /**
+     * Copies the encoded data of an image XObject.
+     * @param width the intrinsic width of the image, in pixels.
+     * @param height the intrinsic height of the image, in pixels.
+     */
+    public static PdfBoxEmbeddedImage create(PDImageXObject xobject, float width, float height) throws IOException {
+        int[] weight = new int[1];
+        FrozenStream stream = freezeStream(xobject.getCOSObject(), weight, new IdentityHashMap<>());
+        return new PdfBoxEmbeddedImage(stream, width, height, weight[0]);
+    }
+
+    /**
+     * Creates an image XObject in <code>doc</code> from the saved data.
+     */
+    public PDImageXObject createXObject(PDDocument doc) throws IOException {
+        COSStream stream = (COSStream) thaw(_stream, doc, new IdentityHashMap<>());
+        return new PDImageXObject(new PDStream(stream), null);
+    }
+
+    public float getWidth() {
+        return _width;
+    }
+
+    public float getHeight() {
+        return _height;
+    }
+
+    @Override
+    public int weight() {
+        return _weight;
+    }
+
+    private static FrozenStream freezeStream(
+            COSStream stream, int[] weight, Map<COSBase, Object> seen) throws IOException {
+        byte[] data;
+        try (InputStream in = stream.createRawInputStream()) {
+            data = readAll(in);
+        }
+        weight[0] += data.length;
+
+        // The length is set again when the data is written.
+        FrozenDictionary dict = freezeDictionary(stream, weight, seen, COSName.LENGTH);
+        return new FrozenStream(dict, data);
+    }
+
+    private static FrozenDictionary freezeDictionary(
+            COSDictionary dict, int[] weight, Map<COSBase, Object> seen, COSName skip) throws IOException {
+        Map<COSName, Object> entries = new LinkedHashMap<>();
+
+        for (Map.Entry<COSName, COSBase> entry : dict.entrySet()) {
+            if (!entry.getKey().equals(skip)) {
+                entries.put(entry.getKey(), freeze(entry.getValue(), weight, seen));
+            }
+        }
+
+        return new FrozenDictionary(Collections.unmodifiableMap(entries));
+    }
+
+    private static Object freeze(COSBase base, int[] weight, Map<COSBase, Object> seen) throws IOException {
+        if (base instanceof COSObject) {
+            base = ((COSObject) base).getObject();
+        }
+
+        if (base == null || base instanceof COSNull) {
+            return COSNull.NULL;
+        } else if (base instanceof COSName || base instanceof COSNumber || base instanceof COSBoolean) {
+            // Not changed after creation.
+            return base;
+        } else if (base instanceof COSString) {
+            byte[] bytes = ((COSString) base).getBytes();
+            weight[0] += bytes.length;
+            return new FrozenString(bytes.clone());
+        }
+
+        Object frozen = seen.get(base);
+        if (frozen != null) {
+            // The same stream, such as a shared color space, is only copied once.
+            return frozen;
+        }
+
+        if (base instanceof COSStream) {
+            frozen = freezeStream((COSStream) base, weight, seen);
+        } else if (base instanceof COSDictionary) {
+            frozen = freezeDictionary((COSDictionary) base, weight, seen, null);
+        } else if (base instanceof COSArray) {
+            COSArray array = (COSArray) base;
+            List<Object> items = new ArrayList<>(array.size());
+            for (int i = 0; i < array.size(); i++) {
+                items.add(freeze(array.get(i), weight, seen));
+            }
+            frozen = new FrozenArray(Collections.unmodifiableList(items));
+        } else {
+            throw new IOException("Unexpected object in image: " + base.getClass().getName());
+        }
+
+        seen.put(base, frozen);
+        return frozen;
+    }
+
+    private static COSBase thaw(Object frozen, PDDocument doc, Map<Object, COSBase> created) throws IOException {
+        if (frozen instanceof COSBase) {
+            return (COSBase) frozen;
+        } else if (frozen instanceof FrozenString) {
+            return new COSString(((FrozenString) frozen).bytes.clone());
+        }
+
+        COSBase base = created.get(frozen);
+        if (base != null) {
+            return base;
+        }
+
+        if (frozen instanceof FrozenArray) {
+            COSArray array = new COSArray();
+            for (Object item : ((FrozenArray) frozen).items) {
+                array.add(thaw(item, doc, created));
+            }
+            base = array;
+        } else if (frozen instanceof FrozenDictionary) {
+            COSDictionary dict = new COSDictionary();
+            thawEntries((FrozenDictionary) frozen, dict, doc, created);
+            base = dict;
+        } else {
+            FrozenStream fs = (FrozenStream) frozen;
+            COSStream stream = doc.getDocument().createCOSStream();
+            thawEntries(fs.dict, stream, doc, created);
+
+            try (OutputStream out = stream.createRawOutputStream()) {
+                out.write(fs.data);
+            }
+
+            base = stream;
+        }
+
+        created.put(frozen, base);
+        return base;
+    }
+
+    private static void thawEntries(
+            FrozenDictionary frozen, COSDictionary target, PDDocument doc, Map<Object, COSBase> created) throws IOException {
+        for (Map.Entry<COSName, Object> entry : frozen.entries.entrySet()) {
+            target.setItem(entry.getKey(), thaw(entry.getValue(), doc, created));
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[10240];
+        int i;
+        while ((i = in.read(buf)) != -1) {
+            out.write(buf, 0, i);
+        }
+        return out.toByteArray();
+    }
+
+    private static class FrozenString {
+        private final byte[] bytes;
+
+        FrozenString(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static class FrozenArray {
+        private final List<Object> items;
+
+        FrozenArray(List<Object> items) {
+            this.items = items;
+        }
+    }
+
+    private static class FrozenDictionary {
+        private final Map<COSName, Object> entries;
+
+        FrozenDictionary(Map<COSName, Object> entries) {
+            this.entries = entries;
+        }
+    }
+
+    private static class FrozenStream {
+        private final FrozenDictionary dict;
+        private final byte[] data;
+
+        FrozenStream(FrozenDictionary dict, byte[] data) {
+            this.dict = dict;
+            this.data = data;
+        }
+    }
+}
@@ -32,6 +32,8 @@ import com.openhtmltopdf.css.value.FontSpecification;
 import com.openhtmltopdf.extend.FSImage;
 import com.openhtmltopdf.extend.OutputDevice;
 import com.openhtmltopdf.extend.OutputDeviceGraphicsDrawer;
+import com.openhtmltopdf.extend.OutputDeviceKeyedGraphicsDrawer;
+import com.openhtmltopdf.extend.RenderMetrics.Counter;
 import com.openhtmltopdf.extend.StructureType;
 import com.openhtmltopdf.extend.TextRenderer;
 import com.openhtmltopdf.layout.SharedContext;
@@ -45,27 +47,37 @@ import com.openhtmltopdf.simple.extend.ReplacedElementScaleHelper;
 import com.openhtmltopdf.util.ArrayUtil;
 import com.openhtmltopdf.util.LogMessageId;
 import com.openhtmltopdf.util.OpenUtil;
+import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 import de.rototor.pdfbox.graphics2d.PdfBoxGraphics2D;
 import de.rototor.pdfbox.graphics2d.PdfBoxGraphics2DFontTextDrawer;
 
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.pdmodel.graphics.shading.PDShading;
 import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import java.awt.*;
 import java.awt.RenderingHints.Key;
 import java.awt.geom.*;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.List;
 import java.util.logging.Level;
@@ -106,6 +118,68 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
         }
     }
     
+    /**
+     * Identifies recorded reusable content by its content stream and the
+     * objects its resources refer to, compared by identity.
+     */
+    private static class ReusableContentKey {
+        private final byte[] content;
+        private final List<String> names = new ArrayList<>();
+        private final List<COSBase> values = new ArrayList<>();
+        private final int hash;
+
+        private ReusableContentKey(byte[] content, PDResources resources) {
+            this.content = content;
+
+            int valuesHash = 0;
+            for (Map.Entry<COSName, COSBase> category : resources.getCOSObject().entrySet()) {
+                names.add(category.getKey().getName());
+
+                if (category.getValue() instanceof COSDictionary) {
+                    for (Map.Entry<COSName, COSBase> entry : ((COSDictionary) category.getValue()).entrySet()) {
+                        names.add(entry.getKey().getName());
+                        values.add(entry.getValue());
+                        valuesHash += System.identityHashCode(entry.getValue());
+                    }
+                } else {
+                    values.add(category.getValue());
+                    valuesHash += System.identityHashCode(category.getValue());
+                }
+            }
+
+            this.hash = (Arrays.hashCode(content) * 31 + names.hashCode()) * 31 + valuesHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ReusableContentKey)) {
+                return false;
+            }
+
+            ReusableContentKey other = (ReusableContentKey) obj;
+
+            if (hash != other.hash ||
+                !Arrays.equals(content, other.content) ||
+                !names.equals(other.names) ||
+                values.size() != other.values.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) != other.values.get(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
     private static final AffineTransform IDENTITY = new AffineTransform();
     private static final BasicStroke STROKE_ONE = new BasicStroke(1);
     private static final boolean ROUND_RECT_DIMENSIONS_DOWN = false;
@@ -166,7 +240,25 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
 
     // Contains all the state needed to manage form controls
     private final PdfBoxPerDocumentFormState _formState = new PdfBoxPerDocumentFormState();
+
+    // Copies of images with interpolation turned off, keyed by the original image, so an image
+    // drawn without interpolation on many pages is only embedded once more.
+    private final Map<PDImageXObject, PDImageXObject> _nonInterpolatedImages = new IdentityHashMap<>();
+
+    // Forms drawn by drawWithGraphics with a key, so identical drawings such as an SVG logo
+    // in a running header are drawn once and placed on every page.
+    private final Map<String, PDFormXObject> _graphicsForms = new HashMap<>();
     
+    // Reusable content, such as page margin areas, output as forms so that content
+    // which is the same on many pages is only output once.
+    private final Map<ReusableContentKey, PDFormXObject> _reusableContent = new HashMap<>();
+
+    // While recording reusable content, the form being recorded, where its content
+    // stream is written and the page content stream to go back to. Otherwise null.
+    private PDAppearanceStream _recordingForm;
+    private ByteArrayOutputStream _recordingContent;
+    private PdfContentStreamAdapter _pageCp;
+
     // The root box in the document. We keep this so we can search for specific boxes below it
     // such as links or form controls which we need to position.
     private Box _root;
@@ -176,8 +268,7 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
     // NOTE: Not tested recently, this feature may be broken.
     private int _startPageNo;
     
-    // Whether we are in test mode, currently not used here, but keep around in case we need it down the track.
-    @SuppressWarnings("unused")
+    // Whether we are in test mode. Test mode output is not compressed.
     private final boolean _testMode;
     
     // Link manage handles a links. We add the link in paintBackground and then output links when the document is finished.
@@ -403,32 +494,31 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
 
     @Override
     public void drawString(String s, float x, float y, JustificationInfo info) {
-        PDFont firstFont = _font.getFontDescription().get(0).getFont();
+        FontDescription firstFont = _font.getFontDescription().get(0);
 
         String effectiveString = TextRenderer.getEffectivePrintableString(s);
 
         // First check if the string contains printable characters only and
         // will print with the current font entirely.
-        try {
-            firstFont.getStringWidth(effectiveString);
-            // We got here, so all is good.
-            drawStringFast(effectiveString, x, y, info, _font.getFontDescription().get(0), _font.getSize2D());
+        if (firstFont.hasGlyphs(effectiveString)) {
+            drawStringFast(effectiveString, x, y, info, firstFont, _font.getSize2D());
             return;
         }
-        catch (Exception e) {
-            // Fallthrough, we'll have to process the string into font runs.
-        }
         
         List<FontRun> fontRuns = PdfBoxTextRenderer.divideIntoFontRuns(_font, effectiveString, _reorderer);
         
         float xOffset = 0f;
         for (FontRun run : fontRuns) {
+            if (run.des != firstFont && !run.str.isEmpty()) {
+                ThreadCtx.metrics().count(Counter.FONT_FALLBACKS, 1);
+            }
+
             drawStringFast(run.str, x + xOffset, y, info, run.des, _font.getSize2D());
             try {
                 if (info == null) {
-                    xOffset += ((run.des.getFont().getStringWidth(run.str) / 1000f) * _font.getSize2D());
+                    xOffset += ((PdfBoxTextRenderer.getRunWidth(run) / 1000f) * _font.getSize2D());
                 } else {
-                    xOffset += ((run.des.getFont().getStringWidth(run.str) / 1000f) * _font.getSize2D()) +
+                    xOffset += ((PdfBoxTextRenderer.getRunWidth(run) / 1000f) * _font.getSize2D()) +
                                (run.spaceCharacterCount * info.getSpaceAdjust()) +
                                (run.otherCharacterCount * info.getNonSpaceAdjust());
                 }
@@ -443,6 +533,8 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
         if (s.length() == 0)
             return;
 
+        ThreadCtx.metrics().count(Counter.TEXT_RUNS, 1);
+
         ensureFillColor();
         AffineTransform at = new AffineTransform(getTransform());
         at.translate(x, y);
@@ -814,19 +906,7 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
 			 * Specialcase for not interpolating an image, default is to always interpolate.
 			 * We must copy the image
 			 */
-			try {
-				InputStream inputStream = xobject.getStream().getCOSObject().createRawInputStream();
-				PDImageXObject cloneImage = new PDImageXObject(_writer, inputStream, COSName.FLATE_DECODE,
-						xobject.getWidth(), xobject.getHeight(), xobject.getBitsPerComponent(),
-						xobject.getColorSpace());
-				cloneImage.setInterpolate(false);
-				if (xobject.getSoftMask() != null)
-					cloneImage.getCOSObject().setItem(COSName.SMASK, xobject.getSoftMask());
-				inputStream.close();
-				xobject = cloneImage;
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
+			xobject = getNonInterpolatedImage(xobject);
 		}
         
 
@@ -843,6 +923,38 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
                 (float) mx[3]);
     }
     
+    private PDImageXObject getNonInterpolatedImage(PDImageXObject xobject) {
+        PDImageXObject copy = _nonInterpolatedImages.get(xobject);
+
+        if (copy != null) {
+            ThreadCtx.metrics().count(Counter.IMAGE_BYTES_DEDUPLICATED, copy.getCOSObject().getLength());
+            return copy;
+        }
+
+        // Copy the whole dictionary, so the filters, decode parameters,
+        // soft mask and color space of the original are kept.
+        COSStream original = xobject.getCOSObject();
+        COSStream stream = _writer.getDocument().createCOSStream();
+        stream.addAll(original);
+
+        try (InputStream in = original.createRawInputStream();
+             OutputStream out = stream.createRawOutputStream()) {
+            IOUtils.copy(in, out);
+        } catch (IOException e) {
+            throw new PdfContentStreamAdapter.PdfException("drawImage", e);
+        }
+
+        try {
+            copy = new PDImageXObject(new PDStream(stream), null);
+        } catch (IOException e) {
+            throw new PdfContentStreamAdapter.PdfException("drawImage", e);
+        }
+        copy.setInterpolate(false);
+
+        _nonInterpolatedImages.put(xobject, copy);
+        return copy;
+    }
+
     @Override
     public void drawPdfAsImage(PDFormXObject _srcObject, Rectangle contentBounds, float intrinsicWidth, float intrinsicHeight) {
         // We start with the page margins...
@@ -1065,6 +1177,34 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
 
     @Override
     public void drawWithGraphics(float x, float y, float width, float height, OutputDeviceGraphicsDrawer renderer) {
+        placeGraphicsForm(x, y, height, drawGraphicsForm(width, height, renderer));
+    }
+
+    @Override
+    public void drawWithGraphics(float x, float y, float width, float height, String key, OutputDeviceKeyedGraphicsDrawer renderer) {
+        // Size is part of the key as the form is drawn at that size.
+        String sizedKey = key != null ? width + "x" + height + ":" + key : null;
+        PDFormXObject xFormObject = sizedKey != null ? _graphicsForms.get(sizedKey) : null;
+
+        if (xFormObject == null) {
+            boolean[] drawn = new boolean[1];
+            xFormObject = drawGraphicsForm(width, height, g2d -> drawn[0] = renderer.render(g2d));
+
+            if (!drawn[0]) {
+                return;
+            }
+
+            if (sizedKey != null) {
+                _graphicsForms.put(sizedKey, xFormObject);
+            }
+        } else {
+            ThreadCtx.metrics().count(Counter.GRAPHICS_REUSED, 1);
+        }
+
+        placeGraphicsForm(x, y, height, xFormObject);
+    }
+
+    private PDFormXObject drawGraphicsForm(float width, float height, OutputDeviceGraphicsDrawer renderer) {
         try {
             PdfBoxGraphics2D pdfBoxGraphics2D = new PdfBoxGraphics2D(_writer, (int) width, (int) height);
 			/*
@@ -1124,33 +1264,108 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
              */
             PDFormXObject xFormObject = pdfBoxGraphics2D.getXFormObject();
             xFormObject.setMatrix(AffineTransform.getScaleInstance(72f / 96f, 72f / 96f));
-            
-            /*
-             * Adjust the y to take into account that the y passed to placeXForm below
-             * refers to the bottom left of the object while we were passed in y the 
-             * position of the top left corner.
-             * FIXME: Make DPI conversion configurable (as above).
-             */
-            y += (height) * _dotsPerPoint * (72f / 96f);
-
-            /*
-             * Use the page transform to convert from _dotsPerPoint units to 
-             * PDF units. Also takes care of page margins.
-             */
-            Point2D p = new Point2D.Float(x, y);
-            Point2D pResult = new Point2D.Float();
-            _transform.transform(p, pResult);
 
-            /*
-             * And then stamp it
-             */
-            _cp.placeXForm((float) pResult.getX(), _pageHeight - (float) pResult.getY(), xFormObject);
+            return xFormObject;
         }
         catch(IOException e){
             throw new RuntimeException("Error while drawing on Graphics2D", e);
         }
     }
 
+    private void placeGraphicsForm(float x, float y, float height, PDFormXObject xFormObject) {
+        /*
+         * Adjust the y to take into account that the y passed to placeXForm below
+         * refers to the bottom left of the object while we were passed in y the 
+         * position of the top left corner.
+         * FIXME: Make DPI conversion configurable (as above).
+         */
+        y += (height) * _dotsPerPoint * (72f / 96f);
+
+        /*
+         * Use the page transform to convert from _dotsPerPoint units to 
+         * PDF units. Also takes care of page margins.
+         */
+        Point2D p = new Point2D.Float(x, y);
+        Point2D pResult = new Point2D.Float();
+        _transform.transform(p, pResult);
+
+        /*
+         * And then stamp it
+         */
+        _cp.placeXForm((float) pResult.getX(), _pageHeight - (float) pResult.getY(), xFormObject);
+    }
+
+    @Override
+    public boolean startReusableContent() {
+        // Tagged content has to stay in the page content stream.
+        if (_pdfUa != null || _recordingForm != null) {
+            return false;
+        }
+
+        _recordingForm = new PDAppearanceStream(_writer);
+        _recordingForm.setResources(new PDResources());
+        _recordingContent = new ByteArrayOutputStream();
+
+        try {
+            _pageCp = _cp;
+            _cp = new PdfContentStreamAdapter(new PDPageContentStream(_writer, _recordingForm, _recordingContent));
+        } catch (IOException e) {
+            _recordingForm = null;
+            _recordingContent = null;
+            _cp = _pageCp;
+            _pageCp = null;
+            throw new PdfContentStreamAdapter.PdfException("startReusableContent", e);
+        }
+
+        // The form may be placed where the graphics state differs from here,
+        // so it must set everything it uses.
+        pushState(new PageState());
+        clearPageState();
+
+        return true;
+    }
+
+    @Override
+    public void endReusableContent() {
+        _cp.closeContent();
+        _cp = _pageCp;
+        popState();
+        clearPageState();
+
+        PDAppearanceStream form = _recordingForm;
+        byte[] content = _recordingContent.toByteArray();
+
+        _recordingForm = null;
+        _recordingContent = null;
+        _pageCp = null;
+
+        if (content.length == 0) {
+            return;
+        }
+
+        ReusableContentKey key = new ReusableContentKey(content, form.getResources());
+        PDFormXObject existing = _reusableContent.get(key);
+
+        if (existing != null) {
+            ThreadCtx.metrics().count(Counter.GRAPHICS_REUSED, 1);
+            _cp.placeXForm(0, 0, existing);
+            return;
+        }
+
+        try (OutputStream os = _testMode ?
+                form.getContentStream().createOutputStream() :
+                form.getContentStream().createOutputStream(COSName.FLATE_DECODE)) {
+            os.write(content);
+        } catch (IOException e) {
+            throw new PdfContentStreamAdapter.PdfException("endReusableContent", e);
+        }
+
+        // Recorded in page space so it is placed without moving it.
+        form.setBBox(_page.getMediaBox());
+        _reusableContent.put(key, form);
+        _cp.placeXForm(0, 0, form);
+    }
+
     @Override
     public List<PagePosition<Box>> findPagePositionsByID(CssContext c, Pattern pattern) {
         Map<String, Box> idMap = _sharedContext.getIdMap();
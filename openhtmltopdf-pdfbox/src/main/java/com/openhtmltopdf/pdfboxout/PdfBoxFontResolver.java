@@ -29,6 +29,7 @@ import com.openhtmltopdf.extend.FSCacheEx;
 import com.openhtmltopdf.extend.FSCacheValue;
 import com.openhtmltopdf.extend.FSSupplier;
 import com.openhtmltopdf.extend.FontResolver;
+import com.openhtmltopdf.extend.RenderMetrics.Counter;
 import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.outputdevice.helper.MinimalFontDescription;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.PdfAConformance;
@@ -38,10 +39,13 @@ import com.openhtmltopdf.pdfboxout.fontstore.FontUtil;
 import com.openhtmltopdf.pdfboxout.fontstore.MainFontStore;
 import com.openhtmltopdf.render.FSFont;
 import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 
+import org.apache.fontbox.ttf.CmapLookup;
 import org.apache.fontbox.ttf.TrueTypeCollection;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
@@ -52,6 +56,7 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 /**
@@ -516,6 +521,10 @@ public class PdfBoxFontResolver implements FontResolver, Closeable {
 
         private PdfBoxRawPDFontMetrics _metrics;
         private final FSCacheEx<String, FSCacheValue> _metricsCache;
+        private PdfBoxGlyphCoverage _coverage;
+        private PdfBoxGlyphAdvances _advances;
+        private CmapLookup _cmap;
+        private boolean _cmapLoaded;
 
         @Override
         public String toString() {
@@ -605,7 +614,10 @@ public class PdfBoxFontResolver implements FontResolver, Closeable {
         }
         
         private PdfBoxRawPDFontMetrics getFontMetricsFromCache(String family, int weight, IdentValue style) {
-            return (PdfBoxRawPDFontMetrics) _metricsCache.get(createFontMetricsCacheKey(family, weight, style));
+            PdfBoxRawPDFontMetrics metrics =
+                    (PdfBoxRawPDFontMetrics) _metricsCache.get(createFontMetricsCacheKey(family, weight, style));
+            ThreadCtx.metrics().count(metrics != null ? Counter.CACHE_HITS : Counter.CACHE_MISSES, 1);
+            return metrics;
         }
         
         private void putFontMetricsInCache(String family, int weight, IdentValue style, PdfBoxRawPDFontMetrics metrics) {
@@ -674,6 +686,13 @@ public class PdfBoxFontResolver implements FontResolver, Closeable {
             return _font != null;
         }
         
+        /**
+         * Returns whether loading the font was attempted and failed.
+         */
+        public boolean isFontLoadFailed() {
+            return _font == null && _supplier == null && _fontSupplier == null;
+        }
+
         /**
          * Downloads and parses the font if required. Should only be called when the font is definitely needed.
          * @return the font or null if there was a problem.
@@ -718,5 +737,166 @@ public class PdfBoxFontResolver implements FontResolver, Closeable {
             
             return _metrics;
         }
+
+        private String createFontTableCacheKey(String kind, String family, int weight, IdentValue style) {
+            return kind + ":" + family + ":" + weight + ":" + style.toString();
+        }
+
+        /**
+         * Gets a per font table, shared through the font metrics cache so that
+         * later renders can reuse what was learnt about the font.
+         */
+        private <T extends FSCacheValue> T getFontTable(String kind, Class<T> type, Supplier<T> creator) {
+            if (_metricsCache == null || _family == null) {
+                return creator.get();
+            }
+
+            String key = createFontTableCacheKey(kind, _family, _weight, _style);
+            FSCacheValue cached = _metricsCache.get(key);
+
+            if (type.isInstance(cached)) {
+                ThreadCtx.metrics().count(Counter.CACHE_HITS, 1);
+                return type.cast(cached);
+            }
+
+            ThreadCtx.metrics().count(Counter.CACHE_MISSES, 1);
+            T table = creator.get();
+            _metricsCache.put(key, table);
+            return table;
+        }
+
+        /**
+         * Puts a font table back in the font metrics cache after it has grown,
+         * as the cache only weighs values when they are put.
+         */
+        private void reweighFontTable(String kind, FSCacheValue table) {
+            if (_metricsCache != null && _family != null) {
+                _metricsCache.put(createFontTableCacheKey(kind, _family, _weight, _style), table);
+            }
+        }
+
+        private PdfBoxGlyphCoverage getCoverage() {
+            if (_coverage == null) {
+                _coverage = getFontTable("font-coverage", PdfBoxGlyphCoverage.class, PdfBoxGlyphCoverage::new);
+            }
+
+            return _coverage;
+        }
+
+        private PdfBoxGlyphAdvances getAdvances() {
+            if (_advances == null) {
+                _advances = getFontTable("font-advances", PdfBoxGlyphAdvances.class, PdfBoxGlyphAdvances::new);
+            }
+
+            return _advances;
+        }
+
+        /**
+         * Gets the advance width of a code point in glyph space units (1/1000 em).
+         * Each code point is only measured once, after that the width comes from the advance
+         * table. Summing advances gives the same result as {@link PDFont#getStringWidth(String)}.
+         * Should only be called for code points where {@link #hasGlyph(int)} is true.
+         */
+        public float getAdvance(int codePoint) throws IOException {
+            PdfBoxGlyphAdvances advances = getAdvances();
+            float advance = advances.get(codePoint);
+
+            if (Float.isNaN(advance)) {
+                advance = getFont().getStringWidth(new String(Character.toChars(codePoint)));
+                if (advances.put(codePoint, advance)) {
+                    reweighFontTable("font-advances", advances);
+                }
+            }
+
+            return advance;
+        }
+
+        /**
+         * Whether this font can encode the code point. Each code point is only tested
+         * against the font once, after that the answer comes from the coverage table.
+         * Returns false if the font can not be loaded.
+         */
+        public boolean hasGlyph(int codePoint) {
+            PdfBoxGlyphCoverage coverage = getCoverage();
+            int known = coverage.lookup(codePoint);
+
+            if (known == PdfBoxGlyphCoverage.ABSENT) {
+                return false;
+            }
+
+            PDFont font = getFont();
+
+            if (font == null) {
+                return false;
+            } else if (known == PdfBoxGlyphCoverage.PRESENT) {
+                return true;
+            }
+
+            boolean present = testGlyph(font, codePoint);
+
+            if (coverage.record(codePoint, present)) {
+                reweighFontTable("font-coverage", coverage);
+            }
+
+            return present;
+        }
+
+        /**
+         * Tests a code point against the unicode cmap of an embedded TrueType font,
+         * which is what PDFBox uses to encode text in these fonts. Other fonts, such
+         * as the built-in fonts, are tested by encoding the code point.
+         */
+        private boolean testGlyph(PDFont font, int codePoint) {
+            CmapLookup cmap = getUnicodeCmap(font);
+
+            if (cmap != null) {
+                return cmap.getGlyphId(codePoint) != 0;
+            }
+
+            try {
+                font.encode(new String(Character.toChars(codePoint)));
+                return true;
+            } catch (IllegalArgumentException | IOException e) {
+                return false;
+            }
+        }
+
+        private CmapLookup getUnicodeCmap(PDFont font) {
+            if (!_cmapLoaded) {
+                _cmapLoaded = true;
+
+                if (font instanceof PDType0Font &&
+                    ((PDType0Font) font).getDescendantFont() instanceof PDCIDFontType2) {
+                    PDCIDFontType2 cidFont = (PDCIDFontType2) ((PDType0Font) font).getDescendantFont();
+
+                    try {
+                        _cmap = cidFont.getTrueTypeFont().getUnicodeCmapLookup(false);
+                    } catch (IOException e) {
+                        // No usable cmap, fall back to encoding.
+                        _cmap = null;
+                    }
+                }
+            }
+
+            return _cmap;
+        }
+
+        /**
+         * Whether this font can encode every code point in the string.
+         * @see #hasGlyph(int)
+         */
+        public boolean hasGlyphs(String str) {
+            for (int i = 0; i < str.length(); ) {
+                int codePoint = str.codePointAt(i);
+
+                if (!hasGlyph(codePoint)) {
+                    return false;
+                }
+
+                i += Character.charCount(codePoint);
+            }
+
+            return true;
+        }
     }
 }
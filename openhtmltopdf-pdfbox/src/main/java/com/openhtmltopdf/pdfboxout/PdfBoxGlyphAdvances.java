@@ -0,0 +1,108 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.openhtmltopdf.extend.FSCacheValue;
+
+/**
+ * Remembers the advance width, in glyph space units (1/1000 em), of each code point
+ * measured in a font. Widths do not depend on font size so one table serves every size
+ * of a font. Stored in pages of 256 code points, so text in Latin scripts
+ * is served from a single dense array.
+ *
+ * Thread safe, so it can be shared between renders in the font metrics cache.
+ */
+public class PdfBoxGlyphAdvances implements FSCacheValue {
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int PAGE_COUNT = (Character.MAX_CODE_POINT >> PAGE_SHIFT) + 1;
+
+    private final AtomicReferenceArray<float[]> _pages = new AtomicReferenceArray<>(PAGE_COUNT);
+    private final AtomicInteger _pageCount = new AtomicInteger();
+
+    /**
+     * @return the advance width or <code>NaN</code> if not yet known.
+     */
+    public float get(int codePoint) {
+        float[] page = _pages.get(codePoint >>> PAGE_SHIFT);
+        return page != null ? page[codePoint & PAGE_MASK] : Float.NaN;
+    }
+
+    /**
+     * @return true if a page was added, so the {@link #weight()} has grown
+     * and a cache holding this table should weigh it again.
+     */
+    public boolean put(int codePoint, float advance) {
+        int pageIdx = codePoint >>> PAGE_SHIFT;
+        float[] page = _pages.get(pageIdx);
+        boolean grown = false;
+
+        if (page == null) {
+            float[] created = new float[PAGE_SIZE];
+            Arrays.fill(created, Float.NaN);
+
+            if (_pages.compareAndSet(pageIdx, null, created)) {
+                _pageCount.incrementAndGet();
+                page = created;
+                grown = true;
+            } else {
+                page = _pages.get(pageIdx);
+            }
+        }
+
+        // Racing writers always store the same value for a code point.
+        page[codePoint & PAGE_MASK] = advance;
+        return grown;
+    }
+
+    @Override
+    public int weight() {
+        return PAGE_COUNT * 4 + _pageCount.get() * (PAGE_SIZE * 4 + 16);
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        List<Integer> used = new ArrayList<>();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            if (_pages.get(i) != null) {
+                used.add(i);
+            }
+        }
+
+        out.writeInt(used.size());
+        for (int pageIdx : used) {
+            float[] page = _pages.get(pageIdx);
+            out.writeInt(pageIdx);
+
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                out.writeFloat(page[i]);
+            }
+        }
+    }
+
+    static PdfBoxGlyphAdvances readFrom(ByteBuffer in) {
+        PdfBoxGlyphAdvances advances = new PdfBoxGlyphAdvances();
+        int count = PdfBoxPersistentFontCache.readCount(in, 4 + PAGE_SIZE * 4);
+
+        for (int p = 0; p < count; p++) {
+            int pageIdx = in.getInt();
+            float[] page = new float[PAGE_SIZE];
+
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                page[i] = in.getFloat();
+            }
+
+            advances._pages.set(pageIdx, page);
+            advances._pageCount.incrementAndGet();
+        }
+
+        return advances;
+    }
+}
@@ -0,0 +1,139 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.openhtmltopdf.extend.FSCacheValue;
+
+/**
+ * Records which code points a font can encode. Each code point is tested against
+ * the font at most once and the answer kept in a sparse two-level table of
+ * 1024 code point pages, so a lookup is two array reads without allocation.
+ *
+ * Thread safe, so it can be shared between renders in the font metrics cache.
+ */
+public class PdfBoxGlyphCoverage implements FSCacheValue {
+    public static final int UNKNOWN = 0;
+    public static final int PRESENT = 1;
+    public static final int ABSENT = 2;
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+    private static final int PAGE_COUNT = (Character.MAX_CODE_POINT >> PAGE_SHIFT) + 1;
+
+    // Each page holds a tested bit-set followed by a present bit-set.
+    private static final int WORDS_PER_SET = (1 << PAGE_SHIFT) / 64;
+
+    private final AtomicReferenceArray<AtomicLongArray> _pages = new AtomicReferenceArray<>(PAGE_COUNT);
+    private final AtomicInteger _pageCount = new AtomicInteger();
+
+    /**
+     * @return one of {@link #UNKNOWN}, {@link #PRESENT} or {@link #ABSENT}.
+     */
+    public int lookup(int codePoint) {
+        AtomicLongArray page = _pages.get(codePoint >>> PAGE_SHIFT);
+
+        if (page == null) {
+            return UNKNOWN;
+        }
+
+        int word = (codePoint & PAGE_MASK) >>> 6;
+        long bit = 1L << (codePoint & 63);
+
+        if ((page.get(word) & bit) == 0) {
+            return UNKNOWN;
+        }
+
+        return (page.get(WORDS_PER_SET + word) & bit) != 0 ? PRESENT : ABSENT;
+    }
+
+    /**
+     * @return true if a page was added, so the {@link #weight()} has grown
+     * and a cache holding this table should weigh it again.
+     */
+    public boolean record(int codePoint, boolean present) {
+        int pageIdx = codePoint >>> PAGE_SHIFT;
+        AtomicLongArray page = _pages.get(pageIdx);
+        boolean grown = false;
+
+        if (page == null) {
+            AtomicLongArray created = new AtomicLongArray(WORDS_PER_SET * 2);
+            if (_pages.compareAndSet(pageIdx, null, created)) {
+                _pageCount.incrementAndGet();
+                page = created;
+                grown = true;
+            } else {
+                page = _pages.get(pageIdx);
+            }
+        }
+
+        int word = (codePoint & PAGE_MASK) >>> 6;
+        long bit = 1L << (codePoint & 63);
+
+        // Set present before tested so readers never see a tested
+        // code point without its answer.
+        if (present) {
+            setBit(page, WORDS_PER_SET + word, bit);
+        }
+        setBit(page, word, bit);
+        return grown;
+    }
+
+    private static void setBit(AtomicLongArray words, int idx, long bit) {
+        long old;
+        do {
+            old = words.get(idx);
+        } while ((old & bit) == 0 && !words.compareAndSet(idx, old, old | bit));
+    }
+
+    @Override
+    public int weight() {
+        return PAGE_COUNT * 4 + _pageCount.get() * (WORDS_PER_SET * 2 * 8 + 16);
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        List<Integer> used = new ArrayList<>();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            if (_pages.get(i) != null) {
+                used.add(i);
+            }
+        }
+
+        out.writeInt(used.size());
+        for (int pageIdx : used) {
+            AtomicLongArray page = _pages.get(pageIdx);
+            out.writeInt(pageIdx);
+
+            // Tested words are read before present words, the
+            // reverse of the order they are written in record.
+            for (int i = 0; i < WORDS_PER_SET * 2; i++) {
+                out.writeLong(page.get(i));
+            }
+        }
+    }
+
+    static PdfBoxGlyphCoverage readFrom(ByteBuffer in) {
+        PdfBoxGlyphCoverage coverage = new PdfBoxGlyphCoverage();
+        int count = PdfBoxPersistentFontCache.readCount(in, 4 + WORDS_PER_SET * 2 * 8);
+
+        for (int p = 0; p < count; p++) {
+            int pageIdx = in.getInt();
+            AtomicLongArray page = new AtomicLongArray(WORDS_PER_SET * 2);
+
+            for (int i = 0; i < WORDS_PER_SET * 2; i++) {
+                page.set(i, in.getLong());
+            }
+
+            coverage._pages.set(pageIdx, page);
+            coverage._pageCount.incrementAndGet();
+        }
+
+        return coverage;
+    }
+}
@@ -28,6 +28,13 @@ public class PdfBoxImage implements FSImage {
         _bytes = image;
         _uri = uri;
 
+        int[] size = probeSize(image);
+        if (size != null) {
+            _intrinsicWidth = size[0];
+            _intrinsicHeight = size[1];
+            return;
+        }
+
         ImageReader reader = null;
         
         try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(_bytes))){
@@ -132,4 +139,109 @@ public class PdfBoxImage implements FSImage {
     public String getUri() {
         return _uri;
     }
+
+    /**
+     * Reads the size of PNG, JPEG and GIF images from their headers, which
+     * is much cheaper than creating an ImageIO reader.
+     * @return width and height or null if not one of these formats or the header is unusual.
+     */
+    static int[] probeSize(byte[] b) {
+        if (b.length >= 24 &&
+            (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G' &&
+            b[12] == 'I' && b[13] == 'H' && b[14] == 'D' && b[15] == 'R') {
+            return new int[] { readInt32BE(b, 16), readInt32BE(b, 20) };
+        } else if (b.length >= 4 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8) {
+            return probeJpegSize(b);
+        } else if (b.length >= 13 && b[0] == 'G' && b[1] == 'I' && b[2] == 'F') {
+            return probeGifSize(b);
+        }
+
+        return null;
+    }
+
+    private static int[] probeJpegSize(byte[] b) {
+        int pos = 2;
+
+        while (pos + 3 < b.length) {
+            if ((b[pos] & 0xFF) != 0xFF) {
+                return null;
+            }
+
+            int marker = b[pos + 1] & 0xFF;
+
+            if (marker == 0xFF) {
+                // Fill byte.
+                pos++;
+                continue;
+            } else if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                // Markers without a length.
+                pos += 2;
+                continue;
+            } else if (marker == 0xD9 || marker == 0xDA) {
+                // End of image or start of scan before any frame header.
+                return null;
+            }
+
+            int length = readInt16BE(b, pos + 2);
+
+            // SOF0 to SOF15, other than DHT, JPG and DAC which share the range.
+            if (marker >= 0xC0 && marker <= 0xCF &&
+                marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                if (pos + 9 > b.length) {
+                    return null;
+                }
+                int height = readInt16BE(b, pos + 5);
+                int width = readInt16BE(b, pos + 7);
+                return width > 0 && height > 0 ? new int[] { width, height } : null;
+            }
+
+            pos += 2 + length;
+        }
+
+        return null;
+    }
+
+    private static int[] probeGifSize(byte[] b) {
+        // The size of the first frame, rather than the logical screen,
+        // to match the ImageIO reader.
+        int pos = 13;
+
+        if ((b[10] & 0x80) != 0) {
+            pos += 3 * (1 << ((b[10] & 0x07) + 1));
+        }
+
+        while (pos < b.length) {
+            int block = b[pos] & 0xFF;
+
+            if (block == 0x2C) {
+                if (pos + 9 > b.length) {
+                    return null;
+                }
+                return new int[] { readInt16LE(b, pos + 5), readInt16LE(b, pos + 7) };
+            } else if (block == 0x21) {
+                // Extension: label then data sub-blocks ending with an empty one.
+                pos += 2;
+                while (pos < b.length && b[pos] != 0) {
+                    pos += (b[pos] & 0xFF) + 1;
+                }
+                pos++;
+            } else {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    private static int readInt32BE(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 24) | ((b[pos + 1] & 0xFF) << 16) | ((b[pos + 2] & 0xFF) << 8) | (b[pos + 3] & 0xFF);
+    }
+
+    private static int readInt16BE(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF);
+    }
+
+    private static int readInt16LE(byte[] b, int pos) {
+        return (b[pos] & 0xFF) | ((b[pos + 1] & 0xFF) << 8);
+    }
 }
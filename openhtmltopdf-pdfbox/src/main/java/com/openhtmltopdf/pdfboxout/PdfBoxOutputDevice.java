@@ -22,6 +22,7 @@ import com.openhtmltopdf.css.style.CssContext;
 import com.openhtmltopdf.extend.FSImage;
 import com.openhtmltopdf.extend.OutputDevice;
 import com.openhtmltopdf.extend.OutputDeviceGraphicsDrawer;
+import com.openhtmltopdf.extend.OutputDeviceKeyedGraphicsDrawer;
 import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.pdfboxout.PdfBoxFontResolver.FontDescription;
 import com.openhtmltopdf.pdfboxout.PdfBoxUtil.Metadata;
@@ -190,6 +191,16 @@ public interface PdfBoxOutputDevice extends OutputDevice, Closeable {
     void drawWithGraphics(float x, float y, float width, float height,
             OutputDeviceGraphicsDrawer renderer);
 
+    @Override
+    void drawWithGraphics(float x, float y, float width, float height,
+            String key, OutputDeviceKeyedGraphicsDrawer renderer);
+
+    @Override
+    boolean startReusableContent();
+
+    @Override
+    void endReusableContent();
+
     List<PagePosition<Box>> findPagePositionsByID(CssContext c, Pattern pattern);
 
     void setRenderingContext(RenderingContext result);
@@ -0,0 +1,248 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * <p>A font metrics cache that can be saved to a file and read back by a later JVM, so that
+ * a freshly started service can lay out text without parsing font files that it does not
+ * end up embedding. Font metrics, glyph coverage and glyph advance widths are saved, other
+ * values are kept in memory only.</p>
+ *
+ * <p>Values are keyed by font family, weight and style rather than font content, so the file
+ * is only used if it was saved with the same <code>fontsFingerprint</code>. This should change
+ * whenever the fonts change, for example a hash of the font files or the application version.</p>
+ *
+ * <p>Use with {@link PdfRendererBuilder.CacheStore#PDF_FONT_METRICS} and call {@link #save()},
+ * for example after a warm-up render or at shutdown:</p>
+ *
+ * <pre>
+ * PdfBoxPersistentFontCache cache = new PdfBoxPersistentFontCache(new File("fonts.cache"), "fonts-v3");
+ * builder.useCacheStore(CacheStore.PDF_FONT_METRICS, cache);
+ * </pre>
+ */
+public class PdfBoxPersistentFontCache implements FSCacheEx<String, FSCacheValue> {
+    private static final int MAGIC = 0x4F54_4643;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte TYPE_METRICS = 1;
+    private static final byte TYPE_COVERAGE = 2;
+    private static final byte TYPE_ADVANCES = 3;
+
+    private final File _file;
+    private final String _fingerprint;
+    private final Map<String, FSCacheValue> _store = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the cache, reading values from <code>file</code> if it exists and
+     * was saved with the same fingerprint. A missing or unreadable file is not an
+     * error, the cache simply starts empty.
+     *
+     * @param file the file to read from and save to.
+     * @param fontsFingerprint a string that changes whenever the fonts in use change.
+     */
+    public PdfBoxPersistentFontCache(File file, String fontsFingerprint) {
+        this._file = file;
+        this._fingerprint = fontsFingerprint;
+
+        if (file.isFile()) {
+            load();
+        }
+    }
+
+    private void load() {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(_file.toPath()));
+
+            if (in.getInt() != MAGIC ||
+                in.getInt() != FORMAT_VERSION ||
+                !_fingerprint.equals(readString(in))) {
+                XRLog.log(Level.INFO, LogMessageId.LogMessageId1Param.LOAD_IGNORING_FONT_CACHE_FILE_FOR_DIFFERENT_FONTS, _file.getAbsolutePath());
+                return;
+            }
+
+            // Each value is at least a key length and a type.
+            int count = readCount(in, 5);
+            Map<String, FSCacheValue> loaded = new HashMap<>(count * 2);
+
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                loaded.put(key, readValue(in));
+            }
+
+            _store.putAll(loaded);
+        } catch (IOException | RuntimeException e) {
+            // A truncated or corrupt file gives a buffer underflow or similar.
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_READ_FONT_CACHE_FILE, _file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Reads a count of items that each take at least <code>itemBytes</code>, checking it
+     * against the bytes left so that a corrupt file can not cause a huge allocation.
+     */
+    static int readCount(ByteBuffer in, int itemBytes) {
+        int count = in.getInt();
+
+        if (count < 0 || count > in.remaining() / itemBytes) {
+            throw new IllegalStateException("Font cache count out of range: " + count);
+        }
+
+        return count;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readCount(in, 1)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutput out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static FSCacheValue readValue(ByteBuffer in) {
+        byte type = in.get();
+
+        switch (type) {
+        case TYPE_METRICS:
+            return new PdfBoxRawPDFontMetrics(
+                    in.getFloat(), in.getFloat(), in.getFloat(),
+                    in.getFloat(), in.getFloat(), in.getFloat());
+        case TYPE_COVERAGE:
+            return PdfBoxGlyphCoverage.readFrom(in);
+        case TYPE_ADVANCES:
+            return PdfBoxGlyphAdvances.readFrom(in);
+        default:
+            throw new IllegalStateException("Unknown font cache value type: " + type);
+        }
+    }
+
+    private static boolean isPersistable(FSCacheValue value) {
+        return value instanceof PdfBoxRawPDFontMetrics ||
+               value instanceof PdfBoxGlyphCoverage ||
+               value instanceof PdfBoxGlyphAdvances;
+    }
+
+    private static void writeValue(DataOutput out, FSCacheValue value) throws IOException {
+        if (value instanceof PdfBoxRawPDFontMetrics) {
+            PdfBoxRawPDFontMetrics metrics = (PdfBoxRawPDFontMetrics) value;
+            out.writeByte(TYPE_METRICS);
+            out.writeFloat(metrics._ascent);
+            out.writeFloat(metrics._descent);
+            out.writeFloat(metrics._strikethroughOffset);
+            out.writeFloat(metrics._strikethroughThickness);
+            out.writeFloat(metrics._underlinePosition);
+            out.writeFloat(metrics._underlineThickness);
+        } else if (value instanceof PdfBoxGlyphCoverage) {
+            out.writeByte(TYPE_COVERAGE);
+            ((PdfBoxGlyphCoverage) value).writeTo(out);
+        } else {
+            out.writeByte(TYPE_ADVANCES);
+            ((PdfBoxGlyphAdvances) value).writeTo(out);
+        }
+    }
+
+    /**
+     * Writes the font metrics, coverage and advance widths currently held to the file.
+     * The file is replaced atomically where the file system allows, so a concurrent
+     * reader never sees a partly written file.
+     */
+    public synchronized void save() throws IOException {
+        // Sorted so the same values always give the same file.
+        Map<String, FSCacheValue> persistable = new TreeMap<>();
+        for (Map.Entry<String, FSCacheValue> entry : _store.entrySet()) {
+            if (isPersistable(entry.getValue())) {
+                persistable.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Path target = _file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), _file.getName(), ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, _fingerprint);
+                out.writeInt(persistable.size());
+
+                for (Map.Entry<String, FSCacheValue> entry : persistable.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return the number of values currently held.
+     */
+    public int size() {
+        return _store.size();
+    }
+
+    @Override
+    public void put(String key, FSCacheValue value) {
+        if (value != null) {
+            _store.put(key, value);
+        }
+    }
+
+    @Override
+    public FSCacheValue get(String key, Callable<? extends FSCacheValue> loader) {
+        FSCacheValue value = _store.get(key);
+
+        if (value != null) {
+            return value;
+        }
+
+        try {
+            value = loader.call();
+
+            if (value != null) {
+                _store.put(key, value);
+            }
+        } catch (Exception e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_CACHE_VALUE_FOR_KEY, key, e);
+            value = null;
+        }
+
+        return value;
+    }
+
+    @Override
+    public FSCacheValue get(String key) {
+        return _store.get(key);
+    }
+}
@@ -35,6 +35,8 @@ import com.openhtmltopdf.outputdevice.helper.BaseDocument;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceControlPriority;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceType;
 import com.openhtmltopdf.extend.FSDOMMutator;
+import com.openhtmltopdf.extend.RenderMetrics.Counter;
+import com.openhtmltopdf.extend.RenderMetrics.Stage;
 import com.openhtmltopdf.outputdevice.helper.PageDimensions;
 import com.openhtmltopdf.outputdevice.helper.UnicodeImplementation;
 import com.openhtmltopdf.pdfboxout.PdfBoxUtil.Metadata;
@@ -52,8 +54,10 @@ import com.openhtmltopdf.render.displaylist.PagedBoxCollector;
 import com.openhtmltopdf.render.displaylist.DisplayListContainer.DisplayListPageContainer;
 import com.openhtmltopdf.resource.XMLResource;
 import com.openhtmltopdf.simple.extend.XhtmlNamespaceHandler;
+import com.openhtmltopdf.util.LambdaUtil;
 import com.openhtmltopdf.util.LogMessageId;
 import com.openhtmltopdf.util.OpenUtil;
+import com.openhtmltopdf.util.RenderMetricsCollector;
 import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 
@@ -85,6 +89,7 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -133,6 +138,10 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
 
     private PageSupplier _pageSupplier;
 
+    private final Executor _compressionExecutor;
+
+    private final Executor _prefetchExecutor;
+
     private final Closeable _diagnosticConsumer;
 
     private final int _initialPageNumber;
@@ -148,7 +157,13 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
             Closeable diagnosticConsumer) {
 
         PdfBoxFontResolver fontResolver = null;
-        _pdfDoc = state.pddocument != null ? state.pddocument : new PDDocument();
+        if (state.pddocument != null) {
+            _pdfDoc = state.pddocument;
+        } else if (state._memoryUsageSetting != null) {
+            _pdfDoc = new PDDocument(state._memoryUsageSetting);
+        } else {
+            _pdfDoc = new PDDocument();
+        }
 
         try {
             _diagnosticConsumer = diagnosticConsumer;
@@ -169,6 +184,11 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
 
             _dotsPerPoint = DEFAULT_DOTS_PER_POINT;
             _testMode = state._testMode;
+
+            // Test mode output is not compressed at all.
+            _compressionExecutor = _testMode ? null : state._compressionExecutor;
+            _prefetchExecutor = state._prefetchExecutor;
+
             _outputDevice = 
                     new PdfBoxFastOutputDevice(DEFAULT_DOTS_PER_POINT, _testMode,
                             state._pdfUaConform || state._pdfAConformance.getConformanceValue().equals("A"),
@@ -199,7 +219,9 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
 
             _sharedContext.setUserAgentCallback(userAgent);
             _sharedContext.setCss(new StyleReference(userAgent));
+            _sharedContext.getCss().setStylesheetCache(state._caches.get(CacheStore.CSS_STYLESHEETS));
             userAgent.setSharedContext(_sharedContext);
+            userAgent.setImageCache(state._caches.get(CacheStore.PDF_IMAGES));
             _outputDevice.setSharedContext(_sharedContext);
 
             fontResolver = new PdfBoxFontResolver(_sharedContext, _pdfDoc, state._caches.get(CacheStore.PDF_FONT_METRICS), state._pdfAConformance, state._pdfUaConform);
@@ -338,7 +360,18 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
 
         _sharedContext.setBaseURL(url);
         _sharedContext.setNamespaceHandler(nsh);
+
+        PdfBoxUserAgent userAgent = (PdfBoxUserAgent) _sharedContext.getUserAgentCallback();
+        if (_prefetchExecutor != null) {
+            userAgent.prefetchDocument(doc, nsh, _sharedContext.getMedia(), _prefetchExecutor);
+        }
+
         _sharedContext.getCss().setDocumentContext(_sharedContext, _sharedContext.getNamespaceHandler(), doc, new NullUserInterface());
+
+        if (_prefetchExecutor != null) {
+            userAgent.prefetchFontFaces(_sharedContext.getCss().getFontFaceRules(), _prefetchExecutor);
+        }
+
         getFontResolver().importFontFaces(_sharedContext.getCss().getFontFaceRules());
         
         if (_svgImpl != null) {
@@ -355,20 +388,32 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
     }
 
     public void layout() {
-        LayoutContext c = newLayoutContext();
-        BlockBox root = BoxBuilder.createRootBox(c, _doc);
-        Box viewport = new ViewportBox(getInitialExtents(c));
+        RenderMetricsCollector metrics = ThreadCtx.metrics();
+        long start = metrics.startStage(Stage.LAYOUT);
+        BlockBox root;
+
+        try {
+            LayoutContext c = newLayoutContext();
+            root = BoxBuilder.createRootBox(c, _doc);
+            Box viewport = new ViewportBox(getInitialExtents(c));
 
-        root.setContainingBlock(viewport);
-        root.layout(c);
+            root.setContainingBlock(viewport);
+            root.layout(c);
 
-        // Useful to see the box tree after layout.
-        // System.out.println(com.openhtmltopdf.util.LambdaUtil.descendantDump(root));
+            // Useful to see the box tree after layout.
+            // System.out.println(com.openhtmltopdf.util.LambdaUtil.descendantDump(root));
+
+            Dimension dim = root.getLayer().getPaintingDimension(c);
+            root.getLayer().trimEmptyPages(c, dim.height);
+            root.getLayer().layoutPages(c);
+            _root = root;
+        } finally {
+            metrics.endStage(Stage.LAYOUT, start);
+        }
 
-        Dimension dim = root.getLayer().getPaintingDimension(c);
-        root.getLayer().trimEmptyPages(c, dim.height);
-        root.getLayer().layoutPages(c);
-        _root = root;
+        if (metrics.isEnabled()) {
+            metrics.count(Counter.BOXES, LambdaUtil.descendants(root).count());
+        }
     }
 
     private Rectangle getInitialExtents(LayoutContext c) {
@@ -493,7 +538,12 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
                 try {
                     fireOnClose();
                     if (success) {
-                        _pdfDoc.save(_os);
+                        long start = ThreadCtx.metrics().startStage(Stage.SAVE);
+                        try {
+                            _pdfDoc.save(_os);
+                        } finally {
+                            ThreadCtx.metrics().endStage(Stage.SAVE, start);
+                        }
                     }
                 } finally {
                     OpenUtil.closeQuietly(_pdfDoc);
@@ -522,11 +572,9 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
     }
 
     private PDPageContentStream initPage(
-            PDDocument doc, float w, float h, int mainPageIndex, int shadowPageIndex) throws IOException {
-
-        PDPage page = _pageSupplier.requestPage(doc, w, h, mainPageIndex, shadowPageIndex);
+            PDDocument doc, PDPage page, float h) throws IOException {
 
-        PDPageContentStream cs = new PDPageContentStream(doc, page, AppendMode.APPEND, !_testMode);
+        PDPageContentStream cs = new PDPageContentStream(doc, page, AppendMode.APPEND, isCompressContentInline());
 
         _outputDevice.initializePage(cs, page, h);
         
@@ -550,6 +598,11 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
         int pdfPageIndex = 0;
         DisplayListContainer dlPages = null;
 
+        PdfBoxContentStreamEncoder encoder = _compressionExecutor != null ?
+                new PdfBoxContentStreamEncoder(_compressionExecutor) : null;
+
+        RenderMetricsCollector metrics = ThreadCtx.metrics();
+
         for (int i = 0; i < pageCount; i++) {
             float nextW;
             float nextH;
@@ -565,7 +618,9 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
 
             DisplayListPageContainer pageOperations;
 
-            try (PDPageContentStream cs = initPage(doc, nextW, nextH, i, -1)) {
+            PDPage pdPage = _pageSupplier.requestPage(doc, nextW, nextH, i, -1);
+
+            try (PDPageContentStream cs = initPage(doc, pdPage, nextH)) {
                 if (i == 0) {
                     firePreWrite(pageCount); // opportunity to adjust meta data
                     setDidValues(doc);       // set PDF header fields from meta data
@@ -574,8 +629,13 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
                         addPdfASchema(doc, _pdfAConformance, _pdfUaConformance);
                     }
 
-                    DisplayListCollector dlCollector = new DisplayListCollector(_root.getLayer().getPages());
-                    dlPages = dlCollector.collectRoot(c, _root.getLayer());
+                    long dlStart = metrics.startStage(Stage.DISPLAY_LIST);
+                    try {
+                        DisplayListCollector dlCollector = new DisplayListCollector(_root.getLayer().getPages());
+                        dlPages = dlCollector.collectRoot(c, _root.getLayer());
+                    } finally {
+                        metrics.endStage(Stage.DISPLAY_LIST, dlStart);
+                    }
                 }
 
                 page.setBasePagePdfPageIndex(pdfPageIndex);
@@ -585,22 +645,58 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
                 c.setPage(i, page);
                 c.setShadowPageNumber(-1);
 
-                paintPageFast(c, page, pageOperations, 0);
+                long paintStart = metrics.startStage(Stage.PAINT);
+                try {
+                    paintPageFast(c, page, pageOperations, 0);
+                } finally {
+                    metrics.endStage(Stage.PAINT, paintStart);
+                }
 
                 _outputDevice.finishPage();
             }
 
+            if (encoder != null) {
+                encoder.submit(pdPage);
+            }
+
             pdfPageIndex++;
 
             if (!pageOperations.shadowPages().isEmpty()) {
-                paintShadowPages(
-                   c, doc, pdfPageIndex, page, pageOperations.shadowPages());
+                long paintStart = metrics.startStage(Stage.PAINT);
+                try {
+                    paintShadowPages(
+                       c, doc, pdfPageIndex, page, pageOperations.shadowPages(), encoder);
+                } finally {
+                    metrics.endStage(Stage.PAINT, paintStart);
+                }
 
                 pdfPageIndex += pageOperations.shadowPages().size();
             }
+
+            // Painted, so let the page's display list be collected.
+            dlPages.discardPageInstructions(i);
+        }
+
+        if (encoder != null) {
+            encoder.finish();
+        }
+
+        long finishStart = metrics.startStage(Stage.PAINT);
+        try {
+            _outputDevice.finish(c, _root);
+        } finally {
+            metrics.endStage(Stage.PAINT, finishStart);
         }
 
-        _outputDevice.finish(c, _root);
+        metrics.count(Counter.PAGES, pdfPageIndex);
+    }
+
+    /**
+     * Whether to compress page content as it is written. If a compression
+     * executor is set content is compressed on the executor instead.
+     */
+    private boolean isCompressContentInline() {
+        return !_testMode && _compressionExecutor == null;
     }
 
     /**
@@ -615,7 +711,8 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
             PDDocument doc,
             int mainPageIndex,
             PageBox currentPage,
-            List<DisplayListPageContainer> shadows) throws IOException {
+            List<DisplayListPageContainer> shadows,
+            PdfBoxContentStreamEncoder encoder) throws IOException {
 
         int count = shadows.size();
 
@@ -634,7 +731,7 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
             PDPage shadowPdPage = 
                 _pageSupplier.requestPage(doc, shadowWidth, shadowHeight, mainPageIndex, i);
 
-            try (PDPageContentStream shadowCs = new PDPageContentStream(doc, shadowPdPage, AppendMode.APPEND, !_testMode)) {
+            try (PDPageContentStream shadowCs = new PDPageContentStream(doc, shadowPdPage, AppendMode.APPEND, isCompressContentInline())) {
                 _outputDevice.initializePage(shadowCs, shadowPdPage, shadowHeight);
                 c.setShadowPageNumber(i);
 
@@ -643,6 +740,10 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
                 _outputDevice.finishPage();
             }
 
+            if (encoder != null) {
+                encoder.submit(shadowPdPage);
+            }
+
             translateX += translateIncrement;
         }
     }
@@ -925,6 +1026,7 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
 
     private void cleanup() {
         OpenUtil.closeQuietly(_outputDevice);
+        OpenUtil.closeQuietly((PdfBoxUserAgent) _sharedContext.getUserAgentCallback());
         OpenUtil.tryQuietly(_sharedContext::removeFromThread);
         OpenUtil.closeQuietly(_diagnosticConsumer);
         OpenUtil.tryQuietly(ThreadCtx::cleanup);
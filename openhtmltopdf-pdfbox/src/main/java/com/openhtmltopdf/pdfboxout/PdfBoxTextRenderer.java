@@ -152,34 +152,21 @@ public class PdfBoxTextRenderer implements TextRenderer {
         List<FontDescription> descriptions = ((PdfBoxFSFont) font).getFontDescription();
         
         for (FontDescription des : descriptions) {
-            try {
-                des.getFont().getStringWidth(replaceStr);
-
-                // Got here without throwing, so the text exists in font.
+            if (des.hasGlyphs(replaceStr)) {
                 ReplacementChar replace = new ReplacementChar();
                 replace.replacement = replaceStr;
                 replace.fontDescription = des;
                 return replace;
-            } catch (Exception e)
-            {
-                // Could not use replacement character in this font.
             }
         }
 
         // Still haven't found a font supporting our replacement text, try space character.
-        replaceStr = " ";
         for (FontDescription des : descriptions) {
-            try {
-                des.getFont().getStringWidth(replaceStr);
-
-                // Got here without throwing, so the char exists in font.
+            if (des.hasGlyph(' ')) {
                 ReplacementChar replace = new ReplacementChar();
                 replace.replacement = " ";
                 replace.fontDescription = des;
                 return replace;
-            } catch (Exception e)
-            {
-                // Could not use space in this font!
             }
         }
     
@@ -201,7 +188,6 @@ public class PdfBoxTextRenderer implements TextRenderer {
         for (int i = 0; i < str.length(); ) {
             int unicode = str.codePointAt(i);
             i += Character.charCount(unicode);
-            String ch = String.valueOf(Character.toChars(unicode));
 
             if (!OpenUtil.isSafeFontCodePointToPrint(unicode)) {
                 // Filter out characters that should never be visible (such
@@ -209,74 +195,33 @@ public class PdfBoxTextRenderer implements TextRenderer {
                 continue;
             }
 
-            boolean gotChar = false;
-            
-            FONT_LOOP:
-            for (FontDescription des : fonts) {
-                try {
-                    des.getFont().getStringWidth(ch);
-                    // We got here, so this font has this character.
-                    if (current.des == null) {
-                        // First character of run.
-                        current.des = des;
-                    }
-                    else if (des != current.des) {
-                        // We have changed font, so we'll start a new font run.
-                        current.str = sb.toString();
-                        runs.add(current);
-                        current = new FontRun();
-                        current.des = des;
-                        sb = new StringBuilder();
-                    }
+            FontDescription found = null;
+            String deshaped = null;
+            boolean useDeshaped = false;
 
-                    if (isJustificationSpace(unicode)) {
-                        current.spaceCharacterCount++;
-                    } else {
-                        current.otherCharacterCount++;
-                    }
-                    
-                    sb.append(ch);
-                    gotChar = true;
+            for (FontDescription des : fonts) {
+                if (des.hasGlyph(unicode)) {
+                    found = des;
                     break;
                 }
-                catch (Exception e1) {
-                    if (reorderer.isLiveImplementation()) {
-                        // Character is not in font! Next, we try deshaping.
-                        String deshaped = reorderer.deshapeText(ch);
-                        try {
-                            des.getFont().getStringWidth(deshaped);
-                            // We got here, so this font has this deshaped character.
-                            if (current.des == null) {
-                                // First character of run.
-                                current.des = des;
-                            }
-                            else if (des != current.des) {
-                                // We have changed font, so we'll start a new font run.
-                                current.str = sb.toString();
-                                runs.add(current);
-                                current = new FontRun();
-                                current.des = des;
-                                sb = new StringBuilder();
-                            }
-                            
-                            if (isJustificationSpace(unicode)) {
-                                current.spaceCharacterCount++;
-                            } else {
-                                current.otherCharacterCount++;
-                            }
-                            
-                            sb.append(deshaped);
-                            gotChar = true;
-                            break FONT_LOOP;
-                        }
-                        catch (Exception e2) {
-                            // Keep trying with next font.
-                        }
+
+                if (reorderer.isLiveImplementation()) {
+                    // Character is not in font! Next, we try deshaping.
+                    if (deshaped == null) {
+                        deshaped = reorderer.deshapeText(String.valueOf(Character.toChars(unicode)));
+                    }
+
+                    if (des.hasGlyphs(deshaped)) {
+                        found = des;
+                        useDeshaped = true;
+                        break;
                     }
                 }
             }
 
-            if (!gotChar) {
+            boolean replaced = false;
+
+            if (found == null) {
                 if (!OpenUtil.isCodePointPrintable(unicode)) {
                     // Filter out control, etc characters when they
                     // are not present in any font.
@@ -284,19 +229,24 @@ public class PdfBoxTextRenderer implements TextRenderer {
                 }
 
                 // We still don't have the character after all that. So use replacement character.
-                if (current.des == null) {
-                    // First character of run.
-                    current.des = replace.fontDescription;
-                }
-                else if (replace.fontDescription != current.des) {
-                    // We have changed font, so we'll start a new font run.
-                    current.str = sb.toString();
-                    runs.add(current);
-                    current = new FontRun();
-                    current.des = replace.fontDescription;
-                    sb = new StringBuilder();
-                }
-                
+                found = replace.fontDescription;
+                replaced = true;
+            }
+
+            if (current.des == null) {
+                // First character of run.
+                current.des = found;
+            }
+            else if (found != current.des) {
+                // We have changed font, so we'll start a new font run.
+                current.str = sb.toString();
+                runs.add(current);
+                current = new FontRun();
+                current.des = found;
+                sb = new StringBuilder();
+            }
+
+            if (replaced) {
                 if (Character.isSpaceChar(unicode) || Character.isWhitespace(unicode)) {
                     current.spaceCharacterCount++;
                     sb.append(' ');
@@ -305,6 +255,18 @@ public class PdfBoxTextRenderer implements TextRenderer {
                     current.otherCharacterCount++;
                     sb.append(replace.replacement);
                 }
+            } else {
+                if (isJustificationSpace(unicode)) {
+                    current.spaceCharacterCount++;
+                } else {
+                    current.otherCharacterCount++;
+                }
+
+                if (useDeshaped) {
+                    sb.append(deshaped);
+                } else {
+                    sb.appendCodePoint(unicode);
+                }
             }
         }
 
@@ -316,13 +278,54 @@ public class PdfBoxTextRenderer implements TextRenderer {
         return runs;
     }
     
+    /**
+     * Sums the advance widths of the printable characters of <code>str</code> from
+     * <code>start</code> to <code>end</code> in a single font, in glyph space units.
+     * Gives the same result as {@link org.apache.pdfbox.pdmodel.font.PDFont#getStringWidth(String)}
+     * but from the advance table, without allocating.
+     * @return the width or <code>NaN</code> if a character is not in the font.
+     */
+    static float getStringWidthInFont(FontDescription des, String str, int start, int end) throws IOException {
+        float width = 0;
+
+        for (int i = start; i < end; ) {
+            int unicode = str.codePointAt(i);
+            i += Character.charCount(unicode);
+
+            if (!OpenUtil.isSafeFontCodePointToPrint(unicode)) {
+                continue;
+            }
+
+            if (!des.hasGlyph(unicode)) {
+                return Float.NaN;
+            }
+
+            width += des.getAdvance(unicode);
+        }
+
+        return width;
+    }
+
+    /**
+     * Gets the width of a font run in glyph space units.
+     */
+    static float getRunWidth(FontRun run) throws IOException {
+        float width = getStringWidthInFont(run.des, run.str, 0, run.str.length());
+
+        if (Float.isNaN(width)) {
+            throw new IllegalArgumentException("Font run contains characters that are not in its font");
+        }
+
+        return width;
+    }
+
     private float getStringWidthSlow(FSFont bf, String str) {
         List<FontRun> runs = divideIntoFontRuns(bf, str, _reorderer);
         float strWidth = 0;
         
         for (FontRun run : runs) {
             try {
-                strWidth += run.des.getFont().getStringWidth(run.str);
+                strWidth += getRunWidth(run);
             } catch (Exception e) {
                 XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.RENDER_BUG_FONT_DIDNT_CONTAIN_EXPECTED_CHARACTER, e);
             }
@@ -333,31 +336,39 @@ public class PdfBoxTextRenderer implements TextRenderer {
 
     @Override
     public int getWidth(FontContext context, FSFont font, String string) {
-        float result = 0f;
+        return getWidth(context, font, string, 0, string.length());
+    }
 
-        String effectiveString = TextRenderer.getEffectivePrintableString(string);
+    @Override
+    public int getWidth(FontContext context, FSFont font, String string, int start, int end) {
+        float result = 0f;
+        List<FontDescription> descriptions = ((PdfBoxFSFont) font).getFontDescription();
 
         try {
-            if (((PdfBoxFSFont) font).getFontDescription() == null 
-                    || ((PdfBoxFSFont) font).getFontDescription().isEmpty()) {
+            if (descriptions == null || descriptions.isEmpty()) {
                 XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.RENDER_FONT_LIST_IS_EMPTY);
             } else {
-              // Go through the list of font descriptions
-              for (FontDescription fd : ((PdfBoxFSFont) font).getFontDescription()) {
-                 if (fd.getFont() != null) {
-                   result = fd.getFont().getStringWidth(effectiveString) / 1000f * font.getSize2D();
-                   break;
-                 } else {
-                     if (!_loggedMissingFont) {
-                         XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.RENDER_FONT_IS_NULL, fd);
-                         _loggedMissingFont = true;
-                     }
-                 }
-              }
+                float width = getStringWidthInFont(descriptions.get(0), string, start, end);
+
+                if (Float.isNaN(width)) {
+                    // Either the first font is missing characters or could not be loaded, so
+                    // divide into runs of fonts. Fonts that could not be loaded are skipped.
+                    width = getStringWidthSlow(font, TextRenderer.getEffectivePrintableString(string.substring(start, end)));
+
+                    for (FontDescription fd : descriptions) {
+                        if (!_loggedMissingFont && fd.isFontLoadFailed()) {
+                            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.RENDER_FONT_IS_NULL, fd);
+                            _loggedMissingFont = true;
+                        }
+                    }
+                }
+
+                result = width / 1000f * font.getSize2D();
             }
         } catch (IllegalArgumentException e2) {
             // PDFont::getStringWidth throws an IllegalArgumentException if the character doesn't exist in the font.
             // So we do it one character by character instead.
+            String effectiveString = TextRenderer.getEffectivePrintableString(string.substring(start, end));
             result = getStringWidthSlow(font, effectiveString) / 1000f * font.getSize2D();
         } catch (IOException e) {
             throw new PdfContentStreamAdapter.PdfException("getWidth", e);
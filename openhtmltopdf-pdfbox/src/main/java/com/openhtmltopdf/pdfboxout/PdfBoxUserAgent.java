@@ -26,12 +26,18 @@ import java.io.InputStream;
 import java.util.Locale;
 import java.util.logging.Level;
 
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.extend.RenderMetrics.Counter;
+import com.openhtmltopdf.extend.impl.FSNoOpCacheStore;
 import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceControlPriority;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceType;
 import com.openhtmltopdf.resource.ImageResource;
 import com.openhtmltopdf.swing.NaiveUserAgent;
 import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.OpenUtil;
+import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 
 public class PdfBoxUserAgent extends NaiveUserAgent {
@@ -39,6 +45,8 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
 
     private final PdfBoxOutputDevice _outputDevice;
 
+    private FSCacheEx<String, FSCacheValue> _sharedImageCache;
+
     public PdfBoxUserAgent(PdfBoxOutputDevice outputDevice) {
 		super();
 		_outputDevice = outputDevice;
@@ -75,6 +83,8 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
         ImageResource resource = _imageCache.get(uriResolved);
 
         if (resource != null && resource.getImage() instanceof PdfBoxImage) {
+            ThreadCtx.metrics().count(Counter.CACHE_HITS, 1);
+
             // Make copy of PdfBoxImage so we don't stuff up the cache.
             PdfBoxImage original = (PdfBoxImage) resource.getImage();
             PdfBoxImage copy = new PdfBoxImage(original.getBytes(), original.getUri(), original.getWidth(), original.getHeight(), original.getXObject());
@@ -82,6 +92,8 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
         }
 
 
+        ThreadCtx.metrics().count(Counter.CACHE_MISSES, 1);
+
         InputStream is = openStream(uriResolved);
 
         if (is != null) {
@@ -98,9 +110,8 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
                     // resource = new ImageResource(uriStr, image);
                 } else {
                     byte[] imgBytes = readStream(is);
-                    PdfBoxImage fsImage = new PdfBoxImage(imgBytes, uriStr);
-                    scaleToOutputResolution(fsImage);
-                    _outputDevice.realizeImage(fsImage);
+                    ThreadCtx.metrics().count(Counter.IMAGE_BYTES, imgBytes.length);
+                    PdfBoxImage fsImage = createImage(imgBytes, uriStr);
                     resource = new ImageResource(uriResolved, fsImage);
                 }
                 _imageCache.put(uriResolved, resource);
@@ -124,6 +135,62 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
         return resource;
     }
 
+    private PdfBoxImage createImage(byte[] imgBytes, String uriStr) throws IOException {
+        if (_sharedImageCache == null) {
+            return createUnsharedImage(imgBytes, uriStr);
+        }
+
+        String key = "image:" + imgBytes.length + ":" + OpenUtil.sha256Hex(imgBytes);
+
+        // Renders embedding the same image at the same time wait for one of
+        // them to decode it rather than all decoding it.
+        PdfBoxImage[] loaded = new PdfBoxImage[1];
+        FSCacheValue cached = _sharedImageCache.get(key, () -> {
+            PdfBoxImage fsImage = new PdfBoxImage(imgBytes, uriStr);
+            float width = fsImage.getWidth();
+            float height = fsImage.getHeight();
+
+            scaleToOutputResolution(fsImage);
+            _outputDevice.realizeImage(fsImage);
+            loaded[0] = fsImage;
+
+            return PdfBoxEmbeddedImage.create(fsImage.getXObject(), width, height);
+        });
+
+        if (loaded[0] != null) {
+            ThreadCtx.metrics().count(Counter.CACHE_MISSES, 1);
+            return loaded[0];
+        } else if (cached instanceof PdfBoxEmbeddedImage) {
+            ThreadCtx.metrics().count(Counter.CACHE_HITS, 1);
+
+            PdfBoxEmbeddedImage embedded = (PdfBoxEmbeddedImage) cached;
+            PdfBoxImage fsImage = new PdfBoxImage(null, uriStr, embedded.getWidth(), embedded.getHeight(), null);
+            scaleToOutputResolution(fsImage);
+            fsImage.setXObject(embedded.createXObject(_outputDevice.getWriter()));
+            return fsImage;
+        }
+
+        // Loading failed, perhaps on another thread, so load unshared to report the error here.
+        ThreadCtx.metrics().count(Counter.CACHE_MISSES, 1);
+        return createUnsharedImage(imgBytes, uriStr);
+    }
+
+    private PdfBoxImage createUnsharedImage(byte[] imgBytes, String uriStr) throws IOException {
+        PdfBoxImage fsImage = new PdfBoxImage(imgBytes, uriStr);
+        scaleToOutputResolution(fsImage);
+        _outputDevice.realizeImage(fsImage);
+        return fsImage;
+    }
+
+    /**
+     * Sets a cache to share images, ready to embed, with other renders,
+     * or null to decode and compress every image for each document.
+     * The no-op cache store is treated the same as null.
+     */
+    public void setImageCache(FSCacheEx<String, FSCacheValue> cache) {
+        _sharedImageCache = cache == FSNoOpCacheStore.INSTANCE ? null : cache;
+    }
+
     private void scaleToOutputResolution(PdfBoxImage image) {
         float factor = _sharedContext.getDotsPerPixel();
         if (factor != 1.0f) {
@@ -0,0 +1,197 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.logging.Level;
+
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.extend.FSSupplier;
+import com.openhtmltopdf.extend.FSUriResolver;
+import com.openhtmltopdf.extend.impl.FSBoundedCacheStore;
+import com.openhtmltopdf.extend.impl.FSNoOpCacheStore;
+import com.openhtmltopdf.outputdevice.helper.AddedFont;
+import com.openhtmltopdf.outputdevice.helper.ExternalResourceType;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.CacheStore;
+import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.OpenUtil;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * <p>A long-lived, immutable and thread safe holder for the resources that are
+ * expensive to set up and can be shared between many renders. Build it once with
+ * {@link PdfRendererBuilder#buildRenderEngine()} and then use it with
+ * {@link #newBuilder()} or {@link PdfRendererBuilder#useRenderEngine(PdfRenderEngine)}
+ * for each document.</p>
+ *
+ * <p>Shared between renders:</p>
+ * <ul>
+ * <li>Font file bytes. Fonts added by file or input stream supplier are read at most
+ * once, on first use, and then parsed from memory by each render.</li>
+ * <li>Caches, such as the font metrics, parsed style sheet and image caches. If a cache was not
+ * configured on the builder, the engine provides its own so that subset fonts whose metrics
+ * are known need not be loaded at all and shared style sheets and images are processed once.</li>
+ * <li>Stream factories, the uri resolver and external resource access controllers.
+ * These must be thread safe if the engine is used from more than one thread.</li>
+ * </ul>
+ *
+ * <p>Everything else, such as the <code>PDDocument</code>, the font resolver and
+ * the user agent, remains per document.</p>
+ */
+public final class PdfRenderEngine {
+    /**
+     * Maximum weight, in approximate bytes, of the caches the engine creates itself.
+     */
+    private static final long DEFAULT_CACHE_WEIGHT = 16L * 1024 * 1024;
+
+    private final List<AddedFont> _fonts;
+    private final Map<CacheStore, FSCacheEx<String, FSCacheValue>> _caches;
+    private final Map<String, FSStreamFactory> _streamFactoryMap;
+    private final FSUriResolver _resolver;
+    private final BiPredicate<String, ExternalResourceType> _beforeAccessController;
+    private final BiPredicate<String, ExternalResourceType> _afterAccessController;
+
+    PdfRenderEngine(PdfRendererBuilderState state) {
+        List<AddedFont> fonts = new ArrayList<>(state._fonts.size());
+        for (AddedFont font : state._fonts) {
+            fonts.add(shareFont(font));
+        }
+        this._fonts = Collections.unmodifiableList(fonts);
+
+        Map<CacheStore, FSCacheEx<String, FSCacheValue>> caches = new EnumMap<>(state._caches);
+        for (CacheStore which : CacheStore.values()) {
+            if (caches.get(which) == FSNoOpCacheStore.INSTANCE) {
+                caches.put(which, new FSBoundedCacheStore(DEFAULT_CACHE_WEIGHT));
+            }
+        }
+        this._caches = Collections.unmodifiableMap(caches);
+
+        this._streamFactoryMap = Collections.unmodifiableMap(new HashMap<>(state._streamFactoryMap));
+        this._resolver = state._resolver;
+        this._beforeAccessController = state._beforeAccessController;
+        this._afterAccessController = state._afterAccessController;
+    }
+
+    /**
+     * Replaces the font source with one that reads the font bytes once and then serves
+     * them from memory. Font collections and <code>PDFont</code> suppliers
+     * are bound to a document so are left alone.
+     */
+    private static AddedFont shareFont(AddedFont font) {
+        if (font.pdfontSupplier != null) {
+            return font;
+        } else if (font.supplier != null) {
+            return new AddedFont(new SharedFontBytesSupplier(font.supplier, font.family),
+                    font.fontFile, font.weight, font.family, font.subset, font.style, font.usedFor);
+        } else if (font.fontFile != null &&
+                   !font.fontFile.getName().toLowerCase(Locale.US).endsWith(".ttc")) {
+            return new AddedFont(new SharedFontBytesSupplier(font.fontFile, font.family),
+                    font.fontFile, font.weight, font.family, font.subset, font.style, font.usedFor);
+        }
+
+        return font;
+    }
+
+    /**
+     * Creates a new builder that borrows the shared resources of this engine.
+     * Document specific settings can then be set on the builder as usual.
+     */
+    public PdfRendererBuilder newBuilder() {
+        return new PdfRendererBuilder().useRenderEngine(this);
+    }
+
+    void applyTo(PdfRendererBuilderState state) {
+        state._fonts.addAll(_fonts);
+        state._caches.putAll(_caches);
+        state._streamFactoryMap.putAll(_streamFactoryMap);
+
+        if (_resolver != null) {
+            state._resolver = _resolver;
+        }
+
+        state._beforeAccessController = _beforeAccessController;
+        state._afterAccessController = _afterAccessController;
+    }
+
+    /**
+     * Gets a cache shared by all renders using this engine.
+     */
+    public FSCacheEx<String, FSCacheValue> getCache(CacheStore which) {
+        return _caches.get(which);
+    }
+
+    /**
+     * Reads font bytes on first use, then supplies an in-memory stream to each
+     * caller. Safe for use across threads.
+     */
+    private static class SharedFontBytesSupplier implements FSSupplier<InputStream> {
+        private final FSSupplier<InputStream> _streamSupplier;
+        private final File _file;
+        private final String _family;
+
+        private volatile byte[] _bytes;
+        private volatile boolean _failed;
+
+        SharedFontBytesSupplier(FSSupplier<InputStream> streamSupplier, String family) {
+            this._streamSupplier = streamSupplier;
+            this._file = null;
+            this._family = family;
+        }
+
+        SharedFontBytesSupplier(File file, String family) {
+            this._streamSupplier = null;
+            this._file = file;
+            this._family = family;
+        }
+
+        @Override
+        public InputStream supply() {
+            byte[] bytes = _bytes;
+
+            if (bytes == null && !_failed) {
+                bytes = load();
+            }
+
+            return bytes != null ? new ByteArrayInputStream(bytes) : null;
+        }
+
+        private synchronized byte[] load() {
+            if (_bytes != null || _failed) {
+                return _bytes;
+            }
+
+            try {
+                if (_file != null) {
+                    _bytes = Files.readAllBytes(_file.toPath());
+                } else {
+                    InputStream is = _streamSupplier.supply();
+                    if (is != null) {
+                        try {
+                            _bytes = OpenUtil.readAll(is);
+                        } finally {
+                            OpenUtil.closeQuietly(is);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_LOAD_FONT,
+                        _file != null ? _file.getAbsolutePath() : _family, e);
+            }
+
+            _failed = _bytes == null;
+            return _bytes;
+        }
+    }
+}
@@ -13,6 +13,7 @@ import com.openhtmltopdf.util.LogMessageId;
 import com.openhtmltopdf.util.OpenUtil;
 import com.openhtmltopdf.util.XRLog;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 
 import java.awt.FontFormatException;
@@ -20,6 +21,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.EnumSet;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
 public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder, PdfRendererBuilderState> {
@@ -219,6 +221,22 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 	    return this;
 	}
 
+	/**
+	 * Sets where the document keeps the data of its streams (page content, images and
+	 * embedded fonts) until it is saved. By default everything is kept on the heap, so heap
+	 * use grows with page count. For very long documents use a temporary file, for example
+	 * <code>MemoryUsageSetting.setupMixed(16 * 1024 * 1024)</code>, so that finished pages
+	 * do not hold on to heap.
+	 * 
+	 * Ignored if a document is given with {@link #usePDDocument(PDDocument)}.
+	 * @param setting memory usage setting for the document
+	 * @return this for method chaining
+	 */
+	public PdfRendererBuilder useMemoryUsageSetting(MemoryUsageSetting setting) {
+	    state._memoryUsageSetting = setting;
+	    return this;
+	}
+
 	/**
 	 * Like {@link BaseRendererBuilder#useFont(FSSupplier, String, Integer, FontStyle, boolean)} but
 	 * allows to supply a PDFont directly. Subclass {@link PDFontSupplier} if you need
@@ -260,12 +278,29 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 	     * Using this cache avoids loading fallback fonts if the metrics are already in the cache
 	     * and the previous fonts contain the needed characters.
 	     */
-	    PDF_FONT_METRICS;
+	    PDF_FONT_METRICS,
+
+	    /**
+	     * Caches parsed style sheets, including inline style elements, based on a combined key
+	     * of uri and a hash of the style sheet text. Using this cache avoids parsing the same
+	     * style sheets for every document. Sheets are still loaded, to check they have not changed.
+	     */
+	    CSS_STYLESHEETS,
+
+	    /**
+	     * Caches images ready to embed, based on a hash of the image file. Using this cache
+	     * avoids decoding and compressing the same images, such as logos, for every document:
+	     * JPEG data is copied as is and other images are copied as already compressed pixel data.
+	     * Images are still loaded, to check they have not changed.
+	     */
+	    PDF_IMAGES;
 	}
 	
 	/**
 	 * Use a specific cache. Cache values should be thread safe, so provided your cache store itself
 	 * is thread safe can be used accross threads.
+	 * {@link com.openhtmltopdf.extend.impl.FSBoundedCacheStore} is a suitable bounded implementation
+	 * for long running services.
 	 * @return this for method chaining.
 	 * @see CacheStore
 	 */
@@ -274,6 +309,76 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 	    return this;
 	}
 
+	/**
+	 * Builds a {@link PdfRenderEngine} from the fonts, caches, stream factories,
+	 * uri resolver and access controllers set on this builder so far. The engine
+	 * should be built once and then shared by all subsequent renders
+	 * (see {@link #useRenderEngine(PdfRenderEngine)}).
+	 */
+	public PdfRenderEngine buildRenderEngine() {
+	    return new PdfRenderEngine(state);
+	}
+
+	/**
+	 * Borrow the shared resources of a render engine for this render.
+	 * Fonts from the engine are added before any fonts added to this
+	 * builder later. Caches, stream factories, uri resolver and access
+	 * controllers can be overridden by calling the relevant
+	 * builder method after this one.
+	 * @return this for method chaining.
+	 * @see #buildRenderEngine()
+	 */
+	public PdfRendererBuilder useRenderEngine(PdfRenderEngine engine) {
+	    engine.applyTo(state);
+	    return this;
+	}
+
+	/**
+	 * Compress page content streams on the given executor, overlapping with the painting
+	 * of later pages, instead of on the rendering thread as each page is finished.
+	 * Worthwhile for documents with hundreds of pages.
+	 * 
+	 * This does <strong>not</strong> paint pages in parallel. Only the Flate compression of
+	 * finished content streams moves off the rendering thread. Painting stays on the rendering
+	 * thread, one page after another, because it shares state that is not thread safe:
+	 * <ul>
+	 * <li>Font subsets record used glyphs as text is drawn.</li>
+	 * <li>Images and form XObjects are created in the document as they are first drawn.</li>
+	 * <li>Painting resolves dynamic values such as <code>counter(pages)</code> into the box tree.</li>
+	 * </ul>
+	 * 
+	 * The executor is not shut down by the renderer, so it may be shared between renders.
+	 * Has no effect in test mode, where content is not compressed.
+	 * 
+	 * @param executor executor to compress page content on, or null to compress inline (the default).
+	 * @return this for method chaining.
+	 */
+	public PdfRendererBuilder useContentStreamCompressionExecutor(Executor executor) {
+	    state._compressionExecutor = executor;
+	    return this;
+	}
+
+	/**
+	 * Fetch the linked style sheets, images and <code>@font-face</code> fonts of the document
+	 * on the given executor before they are needed, instead of one after another on the
+	 * rendering thread as layout reaches them. Worthwhile for documents with many remote resources.
+	 * 
+	 * Uris are resolved and passed to the access controllers on the rendering thread,
+	 * so only the stream factories are called from the executor and they must be thread safe.
+	 * Resources that fail to prefetch are loaded again, as usual, when needed.
+	 * Background images and imported style sheets are not prefetched.
+	 * 
+	 * The executor bounds how many resources are fetched at once. It is not shut down
+	 * by the renderer, so it may be shared between renders.
+	 * 
+	 * @param executor executor to fetch resources on, or null to fetch each resource when needed (the default).
+	 * @return this for method chaining.
+	 */
+	public PdfRendererBuilder useResourcePrefetch(Executor executor) {
+	    state._prefetchExecutor = executor;
+	    return this;
+	}
+
 	/**
 	 * Set a PageSupplier that is called whenever a new page is needed.
 	 * 
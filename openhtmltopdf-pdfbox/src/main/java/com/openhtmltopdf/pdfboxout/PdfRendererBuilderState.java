@@ -6,11 +6,13 @@ import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.CacheStore;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.PdfAConformance;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 
 import java.io.OutputStream;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * This class is internal. DO NOT USE! Just ignore it!
@@ -24,9 +26,12 @@ public class PdfRendererBuilderState extends BaseRendererBuilder.BaseRendererBui
 	public float _pdfVersion = 1.7f;
 	public String _producer;
 	public PDDocument pddocument;
+	public MemoryUsageSetting _memoryUsageSetting;
         public final Map<CacheStore, FSCacheEx<String, FSCacheValue>> _caches = new EnumMap<>(CacheStore.class);
 	public PdfAConformance _pdfAConformance = PdfAConformance.NONE;
 	public boolean _pdfUaConform = false;
 	public byte[] _colorProfile;
 	public PageSupplier _pageSupplier;
+	public Executor _compressionExecutor;
+	public Executor _prefetchExecutor;
 }
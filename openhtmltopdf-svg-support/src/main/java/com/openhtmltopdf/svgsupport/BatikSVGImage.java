@@ -1,6 +1,7 @@
 package com.openhtmltopdf.svgsupport;
 
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.util.Set;
 import java.util.logging.Level;
 
@@ -13,6 +14,7 @@ import org.apache.batik.transcoder.TranscoderInput;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 
@@ -27,6 +29,7 @@ import com.openhtmltopdf.extend.SVGDrawer.SVGImage;
 import com.openhtmltopdf.render.Box;
 import com.openhtmltopdf.render.RenderingContext;
 import com.openhtmltopdf.svgsupport.PDFTranscoder.OpenHtmlFontResolver;
+import com.openhtmltopdf.util.OpenUtil;
 import com.openhtmltopdf.util.XRLog;
 
 public class BatikSVGImage implements SVGImage {
@@ -194,12 +197,32 @@ public class BatikSVGImage implements SVGImage {
             fontResolver = new OpenHtmlFontResolver();
         }
 
-        pdfTranscoder.setRenderingParameters(outputDevice, ctx, x, y,
-                fontResolver, userAgentCallback);
-
+        pdfTranscoder.setRenderingParameters(ctx, fontResolver, userAgentCallback);
 
         String styles = ctx.getCss().getCSSForAllDescendants(svgElement);
+        Rectangle contentBounds = pdfTranscoder.getContentBounds();
+
+        // Identical SVGs, such as a logo in a running header, are only transcoded once
+        // per document if the output device can reuse what it drew.
+        String key = createKey(styles);
+
+        outputDevice.drawWithGraphics(
+                (float) x,
+                (float) y,
+                (float) (contentBounds.width / this.dotsPerPixel),
+                (float) (contentBounds.height / this.dotsPerPixel),
+                key,
+                graphics2D -> {
+                    if (!transcode(styles)) {
+                        return false;
+                    }
+
+                    pdfTranscoder.paint(graphics2D, contentBounds);
+                    return true;
+                });
+    }
 
+    private boolean transcode(String styles) {
         try {
             DOMImplementation impl = SVGDOMImplementation
                     .getDOMImplementation();
@@ -229,8 +252,80 @@ public class BatikSVGImage implements SVGImage {
 
             TranscoderInput in = new TranscoderInput(newDocument);
             pdfTranscoder.transcode(in, null);
+            return true;
         } catch (TranscoderException e) {
             XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.EXCEPTION_SVG_COULD_NOT_DRAW, e);
+            return false;
+        }
+    }
+
+    /**
+     * @return a key identifying what the SVG draws: a hash of the serialized element,
+     * the styles applied to it and the size it is drawn at.
+     */
+    private String createKey(String styles) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("svg:")
+          .append(pdfTranscoder.getWidth()).append('x').append(pdfTranscoder.getHeight())
+          .append(':').append(dotsPerPixel).append('\n')
+          .append(styles.length()).append(':').append(styles).append('\n');
+        serialize(svgElement, sb);
+
+        return "svg:" + OpenUtil.sha256Hex(sb.toString());
+    }
+
+    private static void serialize(Node node, StringBuilder sb) {
+        switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE: {
+            sb.append('<').append(node.getNamespaceURI()).append(' ').append(node.getNodeName());
+
+            NamedNodeMap attrs = node.getAttributes();
+            for (int i = 0; i < attrs.getLength(); i++) {
+                Node attr = attrs.item(i);
+                sb.append(' ').append(attr.getNodeName()).append("=\"");
+                appendEscaped(attr.getNodeValue(), sb);
+                sb.append('"');
+            }
+            sb.append('>');
+
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                serialize(child, sb);
+            }
+
+            sb.append("</>");
+            break;
+        }
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            // Length prefixed so text can not be confused with markup.
+            sb.append(node.getNodeValue().length()).append(':').append(node.getNodeValue());
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Escapes an attribute value so that it can not end the attribute or
+     * start markup, which would let different elements serialize the same.
+     */
+    private static void appendEscaped(String value, StringBuilder sb) {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+            case '&':
+                sb.append("&amp;");
+                break;
+            case '"':
+                sb.append("&quot;");
+                break;
+            case '<':
+                sb.append("&lt;");
+                break;
+            default:
+                sb.append(ch);
+            }
         }
     }
 }
@@ -5,8 +5,6 @@ import com.openhtmltopdf.css.constants.IdentValue;
 import com.openhtmltopdf.css.sheet.FontFaceRule;
 import com.openhtmltopdf.css.style.CalculatedStyle;
 import com.openhtmltopdf.css.style.FSDerivedValue;
-import com.openhtmltopdf.extend.OutputDevice;
-import com.openhtmltopdf.extend.OutputDeviceGraphicsDrawer;
 import com.openhtmltopdf.extend.UserAgentCallback;
 import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceType;
@@ -41,9 +39,6 @@ import java.util.logging.Level;
 
 public class PDFTranscoder extends SVGAbstractTranscoder {
 	private OpenHtmlFontResolver fontResolver;
-	private OutputDevice outputDevice;
-	private double x;
-	private double y;
 	private final Box box;
 	private RenderingContext ctx;
 	private final double dotsPerPixel;
@@ -59,10 +54,7 @@ public class PDFTranscoder extends SVGAbstractTranscoder {
 		this.dotsPerPixel = dotsPerPixel;
 	}
 	
-	public void setRenderingParameters(OutputDevice od, RenderingContext ctx, double x, double y, OpenHtmlFontResolver fontResolver, UserAgentCallback userAgentCallback) {
-	    this.x = x;
-            this.y = y;
-            this.outputDevice = od;
+	public void setRenderingParameters(RenderingContext ctx, OpenHtmlFontResolver fontResolver, UserAgentCallback userAgentCallback) {
             this.ctx = ctx;
             this.fontResolver = fontResolver;
             this.userAgentCallback = userAgentCallback;
@@ -276,34 +268,38 @@ public class PDFTranscoder extends SVGAbstractTranscoder {
 		// is called before our constructor is called in the super constructor.
 		this.userAgent = new OpenHtmlUserAgent(this.fontResolver, this.allowScripts, this.allowExternalResources, this.allowedProtocols);
 		super.transcode(svg, uri, out);
-		
-        Rectangle contentBounds = box.getContentAreaEdge(box.getAbsX(), box.getAbsY(), ctx);
+	}
+
+	/**
+	 * @return the content area of the box, in dots, that the SVG is scaled to.
+	 */
+	public Rectangle getContentBounds() {
+	    return box.getContentAreaEdge(box.getAbsX(), box.getAbsY(), ctx);
+	}
+
+	/**
+	 * Paints the graphics tree built by the last transcode scaled to <code>contentBounds</code>.
+	 */
+	public void paint(Graphics2D graphics2D, Rectangle contentBounds) {
+	    if (this.root == null) {
+	        return;
+	    }
 
         final AffineTransform scale2 = ReplacedElementScaleHelper.createScaleTransform(this.dotsPerPixel, contentBounds, width, height);
         final AffineTransform inverse2 = ReplacedElementScaleHelper.inverseOrNull(scale2);
         final boolean transformed2 = scale2 != null && inverse2 != null;
-        
-		outputDevice.drawWithGraphics(
-		        (float) x,
-		        (float) y,
-		        (float) (contentBounds.width / this.dotsPerPixel), 
-		        (float) (contentBounds.height / this.dotsPerPixel),
-		        new OutputDeviceGraphicsDrawer() {
-			@Override
-			public void render(Graphics2D graphics2D) {
-			    if (transformed2) {
-			        graphics2D.transform(scale2);
-			    }
-				/*
-				 * Do the real paint
-				 */
-				PDFTranscoder.this.root.paint(graphics2D);
-				
-				if (transformed2) {
-				    graphics2D.transform(inverse2);
-				}
-			}
-		});
+
+        if (transformed2) {
+            graphics2D.transform(scale2);
+        }
+        /*
+         * Do the real paint
+         */
+        this.root.paint(graphics2D);
+
+        if (transformed2) {
+            graphics2D.transform(inverse2);
+        }
 	}
 	
 	@Override